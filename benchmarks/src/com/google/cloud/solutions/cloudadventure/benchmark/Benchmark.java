@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * A small benchmark runner for the JVM, in the style of JMH: each operation is run for a number
+ * of timed warm-up iterations, then for a number of timed measurement iterations, and the mean
+ * throughput and the bytes allocated per operation are reported.
+ * <p>
+ * The benchmarks in this directory run on a desktop JVM, without the Android runtime. Compile them
+ * together with the app's {@code world}, {@code backend} and {@code util} sources, the generated
+ * endpoint client, and the Google API client, HTTP client and JSON libraries that the app is built
+ * with, then run a benchmark's {@code main()}. Some of those sources import {@code android.*}, so
+ * the SDK's {@code android.jar} must be on the classpath too, last, so that its stub copies of
+ * libraries such as Apache HttpClient do not hide the real ones. Its classes throw when called,
+ * and the benchmarks never call them: {@code MapUtils} only logs on invalid moves, which the
+ * benchmarks do not make, {@link EndpointGameApi} points the {@code EndpointLog} of
+ * {@code EndpointStats} and {@code EndpointLobby} at the standard output, and the parts of
+ * {@code CloudEndpointUtils} and {@code EndpointConfig} that show errors or read
+ * SharedPreferences are not used.
+ * <p>
+ * The number of iterations and their length can be changed with the {@code benchmark.warmups},
+ * {@code benchmark.iterations} and {@code benchmark.millis} system properties.
+ */
+public class Benchmark {
+
+  /**
+   * An operation to measure. Its result is consumed, so that the work cannot be optimized away.
+   */
+  public interface Operation {
+    public Object run() throws Exception;
+  }
+
+  private static final int WARMUPS = Integer.getInteger("benchmark.warmups", 5);
+  private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 5);
+  private static final long ITERATION_MILLIS = Long.getLong("benchmark.millis", 1000L);
+
+  private static int sink;
+
+  private Benchmark() {}
+
+  /**
+   * Runs the operation and prints its throughput and allocation rate.
+   *
+   * @param name the name to report the operation under
+   * @param operation the operation to measure
+   */
+  public static void run(String name, Operation operation) throws Exception {
+    for (int i = 0; i < WARMUPS; i++) {
+      iterate(operation);
+    }
+    double[] opsPerSecond = new double[ITERATIONS];
+    long totalOps = 0;
+    long totalBytes = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      long bytesBefore = allocatedBytes();
+      long startNanos = System.nanoTime();
+      long ops = iterate(operation);
+      long elapsedNanos = System.nanoTime() - startNanos;
+      totalBytes += allocatedBytes() - bytesBefore;
+      totalOps += ops;
+      opsPerSecond[i] = ops * 1e9 / elapsedNanos;
+    }
+
+    double mean = 0;
+    for (double value : opsPerSecond) {
+      mean += value;
+    }
+    mean /= ITERATIONS;
+    double variance = 0;
+    for (double value : opsPerSecond) {
+      variance += (value - mean) * (value - mean);
+    }
+    double error = ITERATIONS > 1 ? Math.sqrt(variance / (ITERATIONS - 1)) : 0;
+    String allocation = allocatedBytes() < 0
+        ? "n/a" : String.format(Locale.US, "%.1f", (double) totalBytes / totalOps);
+    System.out.println(String.format(Locale.US, "%-50s %14.1f +- %10.1f ops/s %14s B/op", name,
+        mean, error, allocation));
+  }
+
+  private static long iterate(Operation operation) throws Exception {
+    long deadline = System.nanoTime() + ITERATION_MILLIS * 1000000L;
+    long ops = 0;
+    do {
+      Object result = operation.run();
+      sink += result == null ? 0 : System.identityHashCode(result) & 1;
+      ops++;
+    } while (System.nanoTime() < deadline);
+    return ops;
+  }
+
+  /**
+   * Returns the bytes allocated so far by the current thread, or -1 if the JVM cannot tell.
+   */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+}
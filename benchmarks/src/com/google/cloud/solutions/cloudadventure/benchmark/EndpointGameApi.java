@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import com.google.api.services.cloudadventure.Cloudadventure;
+import com.google.api.services.cloudadventure.model.Game;
+import com.google.api.services.cloudadventure.model.GameMessage;
+import com.google.api.services.cloudadventure.model.GameUser;
+import com.google.api.services.cloudadventure.model.Handle;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.PlayerCollection;
+import com.google.cloud.solutions.cloudadventure.backend.EndpointGameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.EndpointLobby;
+import com.google.cloud.solutions.cloudadventure.backend.GameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.LobbyEntry;
+import com.google.cloud.solutions.cloudadventure.util.CloudEndpointUtils;
+import com.google.cloud.solutions.cloudadventure.util.EndpointConfig;
+import com.google.cloud.solutions.cloudadventure.util.EndpointLog;
+
+import java.io.IOException;
+
+/**
+ * A {@link GameApi} that calls a real server through the {@link Cloudadventure} client, built the
+ * same way as the app's, but with the {@link EndpointConfig} of a desktop HTTP transport and the
+ * given root URL, for example {@code http://localhost:8888/_ah/api/} for a local App Engine
+ * development server. The {@link EndpointLog} prints its informational lines to the standard
+ * output and drops the debug ones, such as the line of every call, instead of writing them to
+ * the Android log, which the desktop JVM does not have.
+ */
+public class EndpointGameApi implements GameApi {
+
+  private final Cloudadventure service;
+  private final GameBackend backend;
+
+  public EndpointGameApi(String rootUrl) {
+    EndpointLog.setLogger(new EndpointLog.Logger() {
+      @Override
+      public void debug(String tag, String message) {}
+
+      @Override
+      public void info(String tag, String message) {
+        System.out.println(tag + ": " + message);
+      }
+    });
+    EndpointConfig config = new EndpointConfig(rootUrl, EndpointConfig.Transport.NET_HTTP,
+        EndpointConfig.DEFAULT_TIMEOUT, EndpointConfig.DEFAULT_TIMEOUT, EndpointConfig.GZip.AUTO);
+    Cloudadventure.Builder builder = new Cloudadventure.Builder(config.newTransport(),
+        CloudEndpointUtils.newJsonFactory(), null);
+    service = CloudEndpointUtils.updateBuilder(builder, config).build();
+    backend = new EndpointGameBackend(service);
+  }
+
+  @Override
+  public GameUser createUser(String account) throws IOException {
+    return service.users().create(account).execute();
+  }
+
+  @Override
+  public Handle claimHandle(String handle) throws IOException {
+    return service.handles().claim(handle).execute();
+  }
+
+  @Override
+  public Game createGame(String mazeType) throws IOException {
+    return service.games().create(mazeType).execute();
+  }
+
+  @Override
+  public void invite(GameMessage message) throws IOException {
+    service.games().invite(message).execute();
+  }
+
+  @Override
+  public Player joinGame(String gameId, String handle) throws IOException {
+    return service.players().joinGame(gameId, handle).execute();
+  }
+
+  @Override
+  public PlayerCollection notifyJoin(String gameId, String handle) throws IOException {
+    return service.players().notifyJoin(gameId, handle).execute();
+  }
+
+  /**
+   * Joins with the combined call, or with two calls if the server does not have it, as the app
+   * does.
+   */
+  @Override
+  public LobbyEntry joinGameAndListPlayers(String gameId, String handle) throws IOException {
+    return new EndpointLobby(service).joinGame(gameId, handle);
+  }
+
+  @Override
+  public void startGame(String handle, String gameId) throws IOException {
+    service.games().start(handle, gameId).execute();
+  }
+
+  @Override
+  public GameBackend getBackend() {
+    return backend;
+  }
+
+  @Override
+  public PlayerCollection saveAndSendScores(long numDeaths, String gameId, long gemsCollected,
+      String handle, long mobsKilled) throws IOException {
+    return service.players().saveAndSendScores(numDeaths, gameId, gemsCollected, handle, mobsKilled)
+        .execute();
+  }
+
+  @Override
+  public void endGame(String handle, String gameId) throws IOException {
+    service.games().end(handle, gameId).execute();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import com.google.api.services.cloudadventure.model.Game;
+import com.google.api.services.cloudadventure.model.GameMessage;
+import com.google.api.services.cloudadventure.model.GameUser;
+import com.google.api.services.cloudadventure.model.Handle;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.PlayerCollection;
+import com.google.cloud.solutions.cloudadventure.backend.GameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.LobbyEntry;
+
+import java.io.IOException;
+
+/**
+ * The endpoint calls that a client makes over one game, from signing up to the end of the game,
+ * with the same arguments as the app passes to the {@code Cloudadventure} client. A
+ * {@link LoadSimulation} drives many clients through these calls.
+ */
+public interface GameApi {
+
+  /**
+   * The name of each call, as reported by {@link LoadSimulation}.
+   */
+  String CREATE_USER = "users().create";
+  String CLAIM_HANDLE = "handles().claim";
+  String CREATE_GAME = "games().create";
+  String INVITE = "games().invite";
+  String JOIN_GAME = "players().joinGame";
+  String NOTIFY_JOIN = "players().notifyJoin";
+  String JOIN_GAME_AND_LIST_PLAYERS = "joinGameAndListPlayers";
+  String START_GAME = "games().start";
+  String UPDATE_PLAYER = "players().update";
+  String PATCH_PLAYER = "players().patch";
+  String SAVE_AND_SEND_SCORES = "players().saveAndSendScores";
+  String END_GAME = "games().end";
+
+  GameUser createUser(String account) throws IOException;
+
+  /**
+   * @return the claimed handle, or a handle of {@code "!"} if it was already taken
+   */
+  Handle claimHandle(String handle) throws IOException;
+
+  Game createGame(String mazeType) throws IOException;
+
+  void invite(GameMessage message) throws IOException;
+
+  Player joinGame(String gameId, String handle) throws IOException;
+
+  PlayerCollection notifyJoin(String gameId, String handle) throws IOException;
+
+  /**
+   * Does the work of {@link #joinGame} and {@link #notifyJoin} in a single call.
+   */
+  LobbyEntry joinGameAndListPlayers(String gameId, String handle) throws IOException;
+
+  void startGame(String handle, String gameId) throws IOException;
+
+  /**
+   * Returns the {@link GameBackend} that the game is saved to while it is played.
+   */
+  GameBackend getBackend();
+
+  PlayerCollection saveAndSendScores(long numDeaths, String gameId, long gemsCollected,
+      String handle, long mobsKilled) throws IOException;
+
+  void endGame(String handle, String gameId) throws IOException;
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import com.google.api.services.cloudadventure.model.Coordinates;
+import com.google.api.services.cloudadventure.model.Maze;
+import com.google.cloud.solutions.cloudadventure.world.Combat;
+import com.google.cloud.solutions.cloudadventure.world.CoordinateSet;
+import com.google.cloud.solutions.cloudadventure.world.MapUtils;
+import com.google.cloud.solutions.cloudadventure.world.MapUtils.Cardinal;
+import com.google.cloud.solutions.cloudadventure.world.MapUtils.DirectionMapper;
+import com.google.cloud.solutions.cloudadventure.world.MazeIndex;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the game rules that run on every player action, over synthetic mazes of increasing
+ * size: moving through the maze, turning, fighting, describing the current tile and keeping track
+ * of the gems left.
+ * <p>
+ * The maze sizes can be passed as arguments, and default to 10, 100 and 1000 tiles a side. The
+ * largest maze needs a heap of about 2 GB. {@link MapUtils} logs through {@code android.util.Log}
+ * on invalid moves only, so the benchmark compiles against {@code android.jar} but never calls
+ * into it.
+ * <p>
+ * Before anything is measured, {@link Combat#resolveBattle} is checked against a blow-by-blow
+ * simulation of the same battle over randomized stats, and the benchmark fails if they disagree.
+ */
+public class GameLogicBenchmark {
+
+  private static final Cardinal[] CARDINALS = Cardinal.values();
+
+  public static void main(String[] args) throws Exception {
+    checkCombat(100000, 1);
+    int[] sizes = {10, 100, 1000};
+    if (args.length > 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+    for (int size : sizes) {
+      benchmark(size);
+    }
+  }
+
+  private static void benchmark(int size) throws Exception {
+    final Maze maze = SyntheticGames.newMaze(size, 1);
+    final MazeIndex index = MazeIndex.from(maze);
+    final String name = size + "x" + size + " ";
+
+    Benchmark.run(name + "MazeIndex.from", new Benchmark.Operation() {
+      @Override
+      public Object run() {
+        return MazeIndex.from(maze);
+      }
+    });
+
+    // Walk the maze by keeping a hand on the right-hand wall, turning the mapper as needed
+    Benchmark.run(name + "MapUtils.getNextTile", new Benchmark.Operation() {
+      private final DirectionMapper mapper = new DirectionMapper(Cardinal.NORTH);
+      private int current = index.getStartIndex();
+
+      @Override
+      public Object run() {
+        int relative = mapper.getRelativeOpenings(index.getOpenings(current));
+        if ((relative & DirectionMapper.RIGHT) != 0) {
+          mapper.turnRight();
+        } else if ((relative & DirectionMapper.FRONT) == 0) {
+          if ((relative & DirectionMapper.LEFT) != 0) {
+            mapper.turnLeft();
+          } else {
+            mapper.turnAround();
+          }
+        }
+        current = MapUtils.getNextTile(index, current, mapper.getFrontCardinal());
+        return null;
+      }
+    });
+
+    Benchmark.run(name + "DirectionMapper turns", new Benchmark.Operation() {
+      private final DirectionMapper mapper = new DirectionMapper(Cardinal.NORTH);
+      private int tile;
+      private int sum;
+
+      @Override
+      public Object run() {
+        mapper.turnRight();
+        sum += mapper.getRelativeOpenings(index.getOpenings(tile));
+        mapper.turnLeft();
+        mapper.turnLeft();
+        sum += mapper.getRelativeOpenings(index.getOpenings(tile));
+        mapper.turnAround();
+        sum += mapper.getRightCardinal().ordinal();
+        tile = tile + 1 == index.size() ? 0 : tile + 1;
+        return null;
+      }
+    });
+
+    Benchmark.run(name + "Combat.resolveBattle", new Benchmark.Operation() {
+      private long creatureHp;
+      private long sum;
+
+      @Override
+      public Object run() {
+        creatureHp = creatureHp == 200 ? 1 : creatureHp + 1;
+        sum += Combat.resolveBattle(100, creatureHp, -7, -5);
+        return null;
+      }
+    });
+
+    // A weak weapon against a strong creature, which used to take one loop iteration per blow
+    Benchmark.run(name + "Combat.resolveBattle weak weapon", new Benchmark.Operation() {
+      private long sum;
+
+      @Override
+      public Object run() {
+        sum += Combat.resolveBattle(1000000, 1000000, -1, -1);
+        return null;
+      }
+    });
+
+    Benchmark.run(name + "MapUtils.describeSurroundings", new Benchmark.Operation() {
+      private int tile;
+
+      @Override
+      public Object run() {
+        tile = tile + 1 == index.size() ? 0 : tile + 1;
+        return MapUtils.describeSurroundings(index.getTile(tile),
+            CARDINALS[tile & 3].toString());
+      }
+    });
+
+    final List<Coordinates> gems = maze.getGemsRemaining();
+    Benchmark.run(name + "CoordinateSet.from gems", new Benchmark.Operation() {
+      @Override
+      public Object run() {
+        return CoordinateSet.from(gems);
+      }
+    });
+
+    Benchmark.run(name + "CoordinateSet take and check gem", new Benchmark.Operation() {
+      private final CoordinateSet remaining = CoordinateSet.from(gems);
+      private int next;
+
+      @Override
+      public Object run() {
+        Coordinates gem = gems.get(next);
+        next = next + 1 == gems.size() ? 0 : next + 1;
+        remaining.remove(gem);
+        if (remaining.isEmpty() || remaining.contains(gem)) {
+          throw new IllegalStateException();
+        }
+        remaining.add(gem.getX(), gem.getY());
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Compares {@link Combat#resolveBattle} with {@link #simulateBattle} over random battles,
+   * including ones where either side starts out beaten or cannot harm the other.
+   */
+  private static void checkCombat(int battles, long seed) {
+    Random random = new Random(seed);
+    for (int i = 0; i < battles; i++) {
+      long playerHp = random.nextInt(201) - 10;
+      long creatureHp = random.nextInt(1001) - 10;
+      long weaponEffect = random.nextInt(61) - 50;
+      long creatureEffect = random.nextInt(61) - 50;
+      if (weaponEffect >= 0 && creatureEffect >= 0 && playerHp > 0
+          && creatureHp + weaponEffect > 0) {
+        // The simulation would never end
+        continue;
+      }
+      long expected = simulateBattle(playerHp, creatureHp, weaponEffect, creatureEffect);
+      long actual = Combat.resolveBattle(playerHp, creatureHp, weaponEffect, creatureEffect);
+      if (actual != expected) {
+        throw new IllegalStateException("Combat.resolveBattle(" + playerHp + ", " + creatureHp
+            + ", " + weaponEffect + ", " + creatureEffect + ") returned " + actual + ", expected "
+            + expected);
+      }
+    }
+    System.out.println("Combat.resolveBattle matches the simulation over " + battles
+        + " battles");
+  }
+
+  /**
+   * Plays a battle out one exchange at a time, as the game originally did.
+   */
+  private static long simulateBattle(long playerHp, long creatureHp, long weaponEffect,
+      long creatureEffect) {
+    creatureHp = creatureHp + weaponEffect; // player hits first
+    while (playerHp > 0 && creatureHp > 0) { // battle commences
+      creatureHp = creatureHp + weaponEffect;
+      playerHp = playerHp + creatureEffect;
+    }
+    return playerHp;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.jackson.JacksonFactory;
+import com.google.api.services.cloudadventure.model.GameUser;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.PlayerCollection;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the Gson and Jackson JSON factories on the payloads of the endpoint calls that carry
+ * the most data: a {@link Player} with its maze, the {@link PlayerCollection} of a game, and a
+ * {@link GameUser}.
+ * <p>
+ * By default the payloads are synthetic. Recorded responses can be used instead by passing their
+ * files as {@code player=<file>}, {@code players=<file>} and {@code user=<file>} arguments. The
+ * result decides {@code CloudEndpointUtils.JSON_LIBRARY}.
+ */
+public class JsonFactoryBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> recorded = new LinkedHashMap<String, String>();
+    for (String arg : args) {
+      int split = arg.indexOf('=');
+      if (split > 0) {
+        recorded.put(arg.substring(0, split), arg.substring(split + 1));
+      }
+    }
+
+    JsonFactory[] factories = {new GsonFactory(), new JacksonFactory()};
+    JsonFactory reference = factories[0];
+
+    List<Payload<?>> payloads = new ArrayList<Payload<?>>();
+    payloads.add(new Payload<Player>("Player 10x10", Player.class,
+        load(reference, recorded.get("player"), Player.class,
+            SyntheticGames.newPlayer("player", 10, 1))));
+    payloads.add(new Payload<Player>("Player 50x50", Player.class,
+        SyntheticGames.newPlayer("player", 50, 1)));
+    payloads.add(new Payload<PlayerCollection>("PlayerCollection", PlayerCollection.class,
+        load(reference, recorded.get("players"), PlayerCollection.class, newPlayers())));
+    payloads.add(new Payload<GameUser>("GameUser", GameUser.class,
+        load(reference, recorded.get("user"), GameUser.class, newUser())));
+
+    for (Payload<?> payload : payloads) {
+      for (JsonFactory factory : factories) {
+        benchmark(payload, factory);
+      }
+    }
+  }
+
+  private static <T extends GenericJson> void benchmark(final Payload<T> payload,
+      final JsonFactory factory) throws Exception {
+    final byte[] json = factory.toByteArray(payload.model);
+    String name = factory.getClass().getSimpleName() + " " + payload.name;
+    Benchmark.run(name + " parse (" + json.length + " B)", new Benchmark.Operation() {
+      @Override
+      public Object run() throws IOException {
+        return factory.fromInputStream(new ByteArrayInputStream(json), payload.type);
+      }
+    });
+    Benchmark.run(name + " serialize", new Benchmark.Operation() {
+      @Override
+      public Object run() throws IOException {
+        return factory.toByteArray(payload.model);
+      }
+    });
+  }
+
+  private static <T> T load(JsonFactory factory, String file, Class<T> type, T fallback)
+      throws IOException {
+    if (file == null) {
+      return fallback;
+    }
+    InputStream in = new FileInputStream(new File(file));
+    try {
+      return factory.fromInputStream(in, type);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static PlayerCollection newPlayers() {
+    List<Player> players = new ArrayList<Player>();
+    for (int i = 0; i < 4; i++) {
+      players.add(SyntheticGames.newPlayer("player" + i, 10, i));
+    }
+    return new PlayerCollection().setItems(players);
+  }
+
+  private static GameUser newUser() {
+    List<String> friends = new ArrayList<String>();
+    for (int i = 0; i < 50; i++) {
+      friends.add("friend" + i);
+    }
+    return new GameUser().setHandle("player").setFriends(friends);
+  }
+
+  private static class Payload<T extends GenericJson> {
+    final String name;
+    final Class<T> type;
+    final T model;
+
+    Payload(String name, Class<T> type, T model) {
+      this.name = name;
+      this.type = type;
+      this.model = model;
+    }
+  }
+}
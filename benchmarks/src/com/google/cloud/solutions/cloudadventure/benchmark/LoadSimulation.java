@@ -0,0 +1,419 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import com.google.api.services.cloudadventure.model.Creature;
+import com.google.api.services.cloudadventure.model.GameMessage;
+import com.google.api.services.cloudadventure.model.Pickup;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.Tile;
+import com.google.cloud.solutions.cloudadventure.backend.GameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.PlayerDelta;
+import com.google.cloud.solutions.cloudadventure.world.GameEngine;
+import com.google.cloud.solutions.cloudadventure.world.MapUtils.Cardinal;
+import com.google.cloud.solutions.cloudadventure.world.MazeIndex;
+import com.google.cloud.solutions.cloudadventure.world.PlayerChanges;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives many simulated clients through a whole game each, making the same endpoint calls in the
+ * same order as the app, and reports the latency percentiles and throughput of every call.
+ * <p>
+ * Clients are grouped into games. In each group, the first client creates the game and invites
+ * the others, everyone joins, the host starts the game, and then every client walks its maze with
+ * the app's {@link GameEngine}, fighting hostile creatures and picking up everything it finds,
+ * saving its player every few moves as the app does, first in full and then as
+ * {@link PlayerDelta}s. At the end each client sends its scores and ends the game.
+ * <p>
+ * By default the calls go to the in-process {@link LocalGameApi}. Setting
+ * {@code loadsim.rootUrl}, for example to {@code http://localhost:8888/_ah/api/}, sends them to a
+ * real server through {@link EndpointGameApi} instead. The load is set with the
+ * {@code loadsim.clients}, {@code loadsim.playersPerGame}, {@code loadsim.moves},
+ * {@code loadsim.saveEvery}, {@code loadsim.mazeSize} and {@code loadsim.timeoutSeconds} system
+ * properties, and {@code loadsim.roundTripMillis} adds a round-trip time to the local calls.
+ * Players enter the lobby with the combined {@code joinGameAndListPlayers} call, as the app does,
+ * unless {@code loadsim.combinedJoin} is {@code false}.
+ */
+public class LoadSimulation {
+
+  /**
+   * The name that moves made by the {@link GameEngine} are reported under.
+   */
+  private static final String MOVE = "GameEngine.move";
+
+  private static final int CLIENTS = Integer.getInteger("loadsim.clients", 100);
+  private static final int PLAYERS_PER_GAME = Integer.getInteger("loadsim.playersPerGame", 4);
+  private static final int MOVES = Integer.getInteger("loadsim.moves", 200);
+  private static final int SAVE_EVERY = Integer.getInteger("loadsim.saveEvery", 20);
+  private static final int MAZE_SIZE = Integer.getInteger("loadsim.mazeSize", 20);
+  private static final long TIMEOUT_SECONDS = Long.getLong("loadsim.timeoutSeconds", 60L);
+  private static final long ROUND_TRIP_MILLIS = Long.getLong("loadsim.roundTripMillis", 0L);
+  private static final boolean COMBINED_JOIN =
+      Boolean.parseBoolean(System.getProperty("loadsim.combinedJoin", "true"));
+
+  private static final Cardinal[] CARDINALS = Cardinal.values();
+
+  private final GameApi api;
+  private final String runId = Long.toString(System.currentTimeMillis(), 36);
+  private final Map<String, Latencies> latencies = new TreeMap<String, Latencies>();
+  private final AtomicInteger failedClients = new AtomicInteger();
+
+  public LoadSimulation(GameApi api) {
+    this.api = api;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rootUrl = System.getProperty("loadsim.rootUrl");
+    GameApi api = rootUrl == null
+        ? new LocalGameApi(MAZE_SIZE, ROUND_TRIP_MILLIS) : new EndpointGameApi(rootUrl);
+    new LoadSimulation(api).run(CLIENTS, PLAYERS_PER_GAME);
+  }
+
+  /**
+   * Runs the given number of clients, one thread each, to completion and prints the report.
+   */
+  public void run(int clients, int playersPerGame) throws InterruptedException {
+    List<Thread> threads = new ArrayList<Thread>(clients);
+    GameGroup group = null;
+    for (int i = 0; i < clients; i++) {
+      if (i % playersPerGame == 0) {
+        group = new GameGroup(Math.min(playersPerGame, clients - i));
+      }
+      threads.add(new Thread(new Client(i, group, i % playersPerGame == 0), "Client #" + i));
+    }
+
+    long startNanos = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+    System.out.println(String.format(Locale.US,
+        "%d clients in games of %d, %d moves each, %d failed, %.1f s", clients, playersPerGame,
+        MOVES, failedClients.get(), elapsedSeconds));
+    System.out.println(String.format(Locale.US, "%-30s %8s %7s %10s %9s %9s %9s %9s", "call",
+        "count", "errors", "calls/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+    synchronized (latencies) {
+      for (Map.Entry<String, Latencies> entry : latencies.entrySet()) {
+        System.out.println(entry.getValue().report(entry.getKey(), elapsedSeconds));
+      }
+    }
+  }
+
+  private Latencies getLatencies(String call) {
+    synchronized (latencies) {
+      Latencies result = latencies.get(call);
+      if (result == null) {
+        result = new Latencies();
+        latencies.put(call, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The clients that play one game together, and the points at which they wait for each other.
+   */
+  private static class GameGroup {
+    final CountDownLatch created = new CountDownLatch(1);
+    final CountDownLatch joined;
+    final CountDownLatch started = new CountDownLatch(1);
+    final List<String> handles = new ArrayList<String>();
+    volatile String gameId;
+    volatile boolean hostFailed;
+
+    GameGroup(int size) {
+      joined = new CountDownLatch(size);
+    }
+  }
+
+  /**
+   * One simulated device, playing one game.
+   */
+  private class Client implements Runnable {
+    private final GameGroup group;
+    private final boolean host;
+    private final String account;
+    private final String handle;
+    private final Random random;
+    private String call;
+    private long callStartNanos;
+
+    Client(int number, GameGroup group, boolean host) {
+      this.group = group;
+      this.host = host;
+      account = "loadsim-" + runId + "-" + number + "@example.com";
+      handle = "loadsim-" + runId + "-" + number;
+      random = new Random(number);
+      synchronized (group) {
+        group.handles.add(handle);
+      }
+    }
+
+    @Override
+    public void run() {
+      boolean joined = false;
+      try {
+        begin(GameApi.CREATE_USER);
+        api.createUser(account);
+        end();
+
+        begin(GameApi.CLAIM_HANDLE);
+        if ("!".equals(api.claimHandle(handle).getHandle())) {
+          throw new IOException("Handle " + handle + " has already been taken");
+        }
+        end();
+
+        if (host) {
+          begin(GameApi.CREATE_GAME);
+          group.gameId = api.createGame("RANDOM").getId();
+          end();
+          group.created.countDown();
+
+          List<String> invited;
+          synchronized (group) {
+            invited = new ArrayList<String>(group.handles.subList(1, group.handles.size()));
+          }
+          begin(GameApi.INVITE);
+          api.invite(new GameMessage().setFrom(handle).setTo(invited).setGameId(group.gameId));
+          end();
+        } else {
+          await(group.created, "game");
+        }
+
+        Player player;
+        if (COMBINED_JOIN) {
+          begin(GameApi.JOIN_GAME_AND_LIST_PLAYERS);
+          player = api.joinGameAndListPlayers(group.gameId, handle).getPlayer();
+          end();
+        } else {
+          begin(GameApi.JOIN_GAME);
+          player = api.joinGame(group.gameId, handle);
+          end();
+
+          begin(GameApi.NOTIFY_JOIN);
+          api.notifyJoin(group.gameId, handle);
+          end();
+        }
+        joined = true;
+        group.joined.countDown();
+
+        if (host) {
+          await(group.joined, "players");
+          begin(GameApi.START_GAME);
+          api.startGame(handle, group.gameId);
+          end();
+          group.started.countDown();
+        } else {
+          await(group.started, "start");
+        }
+
+        play(player);
+
+        begin(GameApi.SAVE_AND_SEND_SCORES);
+        api.saveAndSendScores(player.getNumDeaths(), group.gameId, player.getGemsCollected(),
+            handle, player.getMobsKilled());
+        end();
+
+        begin(GameApi.END_GAME);
+        api.endGame(handle, group.gameId);
+        end();
+      } catch (Exception e) {
+        if (host && group.started.getCount() > 0) {
+          group.hostFailed = true;
+        }
+        getLatencies(call).fail();
+        failedClients.incrementAndGet();
+        System.err.println(handle + " failed in " + call + ": " + e);
+      } finally {
+        if (!joined) {
+          group.joined.countDown();
+        }
+        if (host) {
+          // Never leave the other players of a failed host waiting for the whole timeout
+          group.created.countDown();
+          group.started.countDown();
+        }
+      }
+    }
+
+    /**
+     * Walks the maze at random, dealing with whatever is on each tile, and saves the player
+     * every {@link #SAVE_EVERY} moves.
+     */
+    private void play(Player player) throws IOException {
+      MazeIndex index = MazeIndex.from(player.getMaze());
+      PlayerChanges changes = new PlayerChanges();
+      GameEngine engine = new GameEngine(player, index, changes);
+      GameBackend backend = api.getBackend();
+      long version = GameBackend.NO_VERSION;
+
+      for (int move = 1; move <= MOVES && !engine.isGameOver(); move++) {
+        call = MOVE;
+        callStartNanos = System.nanoTime();
+        Cardinal direction = pickDirection(engine);
+        if (direction != null) {
+          engine.move(direction);
+          act(engine);
+        }
+        end();
+
+        if (move % SAVE_EVERY == 0 || move == MOVES || engine.isGameOver()) {
+          engine.syncGemsRemaining();
+          PlayerChanges saved = changes.drain();
+          long newVersion = GameBackend.NO_VERSION;
+          if (version != GameBackend.NO_VERSION) {
+            begin(GameApi.PATCH_PLAYER);
+            newVersion = backend.patchPlayer(PlayerDelta.from(player, index, saved, version));
+            end();
+          }
+          if (newVersion == GameBackend.NO_VERSION) {
+            begin(GameApi.UPDATE_PLAYER);
+            newVersion = backend.updatePlayer(player);
+            end();
+          }
+          version = newVersion;
+        }
+      }
+    }
+
+    private Cardinal pickDirection(GameEngine engine) {
+      int openings = engine.getCurrentOpenings();
+      if (openings == 0) {
+        return null;
+      }
+      int first = random.nextInt(CARDINALS.length);
+      for (int i = 0; i < CARDINALS.length; i++) {
+        Cardinal direction = CARDINALS[(first + i) % CARDINALS.length];
+        if (engine.getMazeIndex().isOpenTo(engine.getCurrentTileIndex(), direction)) {
+          return direction;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Fights the first hostile creature on the current tile if the player has a weapon, and
+     * takes the first pickup.
+     */
+    private void act(GameEngine engine) {
+      Player player = engine.getPlayer();
+      Tile tile = player.getCurrentTile();
+      if (GameEngine.hasHostileCreature(tile)) {
+        Pickup weapon = findWeapon(player);
+        if (weapon != null) {
+          for (Creature creature : tile.getCreatures()) {
+            if (creature.getMaxEffect() < 0) {
+              GameEngine.Result result = engine.fight(creature, weapon);
+              if (result.getOutcome() == GameEngine.Outcome.PLAYER_DIED) {
+                engine.respawn();
+                return;
+              }
+              break;
+            }
+          }
+        }
+      }
+      List<Pickup> pickups = tile.getPickups();
+      if (pickups != null && !pickups.isEmpty()) {
+        engine.take(pickups.get(0));
+      }
+    }
+
+    private Pickup findWeapon(Player player) {
+      for (Pickup pickup : player.getPickups()) {
+        if (pickup.getMaxEffect() < 0 && pickup.getNumUses() > 0) {
+          return pickup;
+        }
+      }
+      return null;
+    }
+
+    private void await(CountDownLatch latch, String what)
+        throws IOException, InterruptedException {
+      call = "wait for " + what;
+      if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        throw new IOException("Timed out");
+      }
+      if (group.hostFailed) {
+        throw new IOException("The host of the game failed");
+      }
+    }
+
+    private void begin(String name) {
+      call = name;
+      callStartNanos = System.nanoTime();
+    }
+
+    private void end() {
+      getLatencies(call).record(System.nanoTime() - callStartNanos);
+    }
+  }
+
+  /**
+   * The latencies of every successful call of one kind, and the number of failed ones.
+   */
+  private static class Latencies {
+    private long[] nanos = new long[64];
+    private int count;
+    private int errors;
+
+    synchronized void record(long elapsedNanos) {
+      if (count == nanos.length) {
+        nanos = Arrays.copyOf(nanos, count * 2);
+      }
+      nanos[count++] = elapsedNanos;
+    }
+
+    synchronized void fail() {
+      errors++;
+    }
+
+    synchronized String report(String name, double elapsedSeconds) {
+      long[] sorted = Arrays.copyOf(nanos, count);
+      Arrays.sort(sorted);
+      return String.format(Locale.US, "%-30s %8d %7d %10.1f %9.3f %9.3f %9.3f %9.3f", name, count,
+          errors, count / elapsedSeconds, percentile(sorted, 50), percentile(sorted, 90),
+          percentile(sorted, 99), percentile(sorted, 100));
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the sorted latencies, in milliseconds.
+     */
+    private static double percentile(long[] sorted, int percent) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+      return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+  }
+}
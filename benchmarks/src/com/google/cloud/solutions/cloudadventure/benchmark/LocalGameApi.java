@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import com.google.api.services.cloudadventure.model.Game;
+import com.google.api.services.cloudadventure.model.GameMessage;
+import com.google.api.services.cloudadventure.model.GameUser;
+import com.google.api.services.cloudadventure.model.Handle;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.PlayerCollection;
+import com.google.cloud.solutions.cloudadventure.backend.GameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.LobbyEntry;
+import com.google.cloud.solutions.cloudadventure.backend.LocalGameBackend;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand-in for the {@link GameApi} calls, keeping users, handles and games in
+ * memory, handing out {@link SyntheticGames} mazes, and saving players to the
+ * {@link LocalGameBackend}, as the app does with {@code CloudEndpointUtils.LOCAL_BACKEND_RUN}.
+ * <p>
+ * It does no network or datastore work, so a {@link LoadSimulation} against it measures the cost
+ * of the client side of the game, and of the stand-in's own locking, rather than the server's.
+ * A fixed round-trip time can be added to every call, saves excepted, to compare call sequences
+ * as they would fare on a slow network.
+ */
+public class LocalGameApi implements GameApi {
+
+  private final int mazeSize;
+  private final long roundTripMillis;
+  private final AtomicLong gameIds = new AtomicLong();
+  private final ConcurrentMap<String, GameUser> users = new ConcurrentHashMap<String, GameUser>();
+  private final ConcurrentMap<String, String> handles = new ConcurrentHashMap<String, String>();
+  private final ConcurrentMap<String, LocalGame> games = new ConcurrentHashMap<String, LocalGame>();
+
+  /**
+   * @param mazeSize the width and height of the mazes of new games
+   * @param roundTripMillis how long every call waits before doing its work
+   */
+  public LocalGameApi(int mazeSize, long roundTripMillis) {
+    this.mazeSize = mazeSize;
+    this.roundTripMillis = roundTripMillis;
+  }
+
+  @Override
+  public GameUser createUser(String account) throws IOException {
+    roundTrip();
+    GameUser user = new GameUser().setAccount(account);
+    GameUser existing = users.putIfAbsent(account, user);
+    return existing == null ? user : existing;
+  }
+
+  @Override
+  public Handle claimHandle(String handle) throws IOException {
+    roundTrip();
+    boolean claimed = handles.putIfAbsent(handle, handle) == null;
+    return new Handle().setHandle(claimed ? handle : "!");
+  }
+
+  @Override
+  public Game createGame(String mazeType) throws IOException {
+    roundTrip();
+    long id = gameIds.incrementAndGet();
+    String gameId = "local-" + id;
+    games.put(gameId, new LocalGame(id));
+    return new Game().setId(gameId);
+  }
+
+  @Override
+  public void invite(GameMessage message) throws IOException {
+    roundTrip();
+    LocalGame game = getGame(message.getGameId());
+    synchronized (game) {
+      game.invited.addAll(message.getTo());
+    }
+  }
+
+  @Override
+  public Player joinGame(String gameId, String handle) throws IOException {
+    roundTrip();
+    return addPlayer(gameId, handle);
+  }
+
+  @Override
+  public PlayerCollection notifyJoin(String gameId, String handle) throws IOException {
+    roundTrip();
+    return getPlayers(getGame(gameId));
+  }
+
+  @Override
+  public LobbyEntry joinGameAndListPlayers(String gameId, String handle) throws IOException {
+    roundTrip();
+    Player player = addPlayer(gameId, handle);
+    return new LobbyEntry().setPlayer(player).setPlayers(getPlayers(getGame(gameId)));
+  }
+
+  private Player addPlayer(String gameId, String handle) throws IOException {
+    LocalGame game = getGame(gameId);
+    // Every player of a game is handed the same maze
+    Player player = SyntheticGames.newPlayer(handle, mazeSize, game.seed).setGameId(gameId);
+    synchronized (game) {
+      if (game.started) {
+        throw new IOException("Game " + gameId + " has already started");
+      }
+      game.players.put(handle, new Player().setHandle(handle).setGameId(gameId)
+          .setGemsCollected(0L).setMobsKilled(0L).setNumDeaths(0L));
+    }
+    return player;
+  }
+
+  @Override
+  public void startGame(String handle, String gameId) throws IOException {
+    roundTrip();
+    LocalGame game = getGame(gameId);
+    synchronized (game) {
+      game.started = true;
+    }
+  }
+
+  @Override
+  public GameBackend getBackend() {
+    return LocalGameBackend.get();
+  }
+
+  @Override
+  public PlayerCollection saveAndSendScores(long numDeaths, String gameId, long gemsCollected,
+      String handle, long mobsKilled) throws IOException {
+    roundTrip();
+    LocalGame game = getGame(gameId);
+    synchronized (game) {
+      Player scores = game.players.get(handle);
+      if (scores == null) {
+        throw new IOException("Player " + handle + " is not in game " + gameId);
+      }
+      scores.setGemsCollected(gemsCollected).setMobsKilled(mobsKilled).setNumDeaths(numDeaths);
+    }
+    return getPlayers(game);
+  }
+
+  @Override
+  public void endGame(String handle, String gameId) throws IOException {
+    roundTrip();
+    LocalGame game = getGame(gameId);
+    synchronized (game) {
+      game.ended.add(handle);
+      if (game.ended.size() < game.players.size()) {
+        return;
+      }
+    }
+    games.remove(gameId);
+  }
+
+  private void roundTrip() throws IOException {
+    if (roundTripMillis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(roundTripMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private LocalGame getGame(String gameId) throws IOException {
+    LocalGame game = games.get(gameId);
+    if (game == null) {
+      throw new IOException("No game " + gameId);
+    }
+    return game;
+  }
+
+  private PlayerCollection getPlayers(LocalGame game) {
+    List<Player> players = new ArrayList<Player>();
+    synchronized (game) {
+      for (Player player : game.players.values()) {
+        players.add(player.clone());
+      }
+    }
+    return new PlayerCollection().setItems(players);
+  }
+
+  private static class LocalGame {
+    final long seed;
+    final List<String> invited = new ArrayList<String>();
+    final Map<String, Player> players = new LinkedHashMap<String, Player>();
+    final Set<String> ended = new HashSet<String>();
+    boolean started;
+
+    LocalGame(long seed) {
+      this.seed = seed;
+    }
+  }
+}
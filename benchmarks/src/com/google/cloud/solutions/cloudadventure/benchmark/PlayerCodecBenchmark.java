@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.cloud.solutions.cloudadventure.util.PlayerCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares {@link PlayerCodec} with the JSON that the endpoint sends, on synthetic players of
+ * increasing maze size: the size of each encoding before and after gzip, and how fast each is read
+ * and written.
+ * <p>
+ * Before anything is measured, every player is taken from JSON through the codec and back to JSON,
+ * and the benchmark fails if the JSON differs. The maze sizes can be passed as arguments, and
+ * default to 10 and 50 tiles a side.
+ */
+public class PlayerCodecBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    JsonFactory factory = new GsonFactory();
+    checkRoundTrip(factory, 20);
+    int[] sizes = {10, 50};
+    if (args.length > 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+    for (int size : sizes) {
+      benchmark(factory, size);
+    }
+  }
+
+  private static void benchmark(final JsonFactory factory, int size) throws Exception {
+    final Player player =
+        factory.fromString(factory.toString(SyntheticGames.newPlayer("player", size, 1)),
+            Player.class);
+    final byte[] json = factory.toByteArray(player);
+    final byte[] encoded = encode(player);
+    String name = "Player " + size + "x" + size;
+    System.out.println(String.format(Locale.US,
+        "%s: JSON %d B (%d B gzipped), PlayerCodec %d B (%d B gzipped)", name, json.length,
+        gzip(json).length, encoded.length, gzip(encoded).length));
+
+    Benchmark.run(name + " JSON parse", new Benchmark.Operation() {
+      @Override
+      public Object run() throws IOException {
+        return factory.fromInputStream(new ByteArrayInputStream(json), Player.class);
+      }
+    });
+    Benchmark.run(name + " PlayerCodec read", new Benchmark.Operation() {
+      @Override
+      public Object run() throws IOException {
+        return PlayerCodec.read(new ByteArrayInputStream(encoded));
+      }
+    });
+    Benchmark.run(name + " JSON serialize", new Benchmark.Operation() {
+      @Override
+      public Object run() throws IOException {
+        return factory.toByteArray(player);
+      }
+    });
+    Benchmark.run(name + " PlayerCodec write", new Benchmark.Operation() {
+      @Override
+      public Object run() throws IOException {
+        return encode(player);
+      }
+    });
+  }
+
+  /**
+   * Parses players of random maze sizes from JSON, takes them through {@link PlayerCodec}, and
+   * checks that they serialize back to the same JSON.
+   */
+  private static void checkRoundTrip(JsonFactory factory, int players) throws IOException {
+    for (int i = 0; i < players; i++) {
+      int size = 1 + i % 10 * 3;
+      String json = factory.toString(SyntheticGames.newPlayer("player" + i, size, i));
+      Player parsed = factory.fromString(json, Player.class);
+      Player decoded = PlayerCodec.read(new ByteArrayInputStream(encode(parsed)));
+      String roundTrip = factory.toString(decoded);
+      if (!roundTrip.equals(json)) {
+        throw new IllegalStateException("PlayerCodec changed player" + i + " (" + size + "x"
+            + size + "):\n" + json + "\n" + roundTrip);
+      }
+    }
+    System.out.println("PlayerCodec round-trips the JSON of " + players + " players");
+  }
+
+  private static byte[] encode(Player player) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PlayerCodec.write(player, out);
+    return out.toByteArray();
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(bytes);
+    gzip.close();
+    return out.toByteArray();
+  }
+}
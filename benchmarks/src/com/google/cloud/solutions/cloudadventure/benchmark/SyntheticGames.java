@@ -0,0 +1,176 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.benchmark;
+
+import com.google.api.services.cloudadventure.model.Coordinates;
+import com.google.api.services.cloudadventure.model.Creature;
+import com.google.api.services.cloudadventure.model.Maze;
+import com.google.api.services.cloudadventure.model.Pickup;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.Tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds games shaped like the ones the backend hands out, for benchmarks: a perfect maze of the
+ * given size, carved from a fixed seed, with creatures, pickups and gems spread over its tiles.
+ * <p>
+ * To keep mazes of a million tiles affordable, tiles share their description and their list of
+ * openings, and tiles with nothing on them have no creature or pickup lists. The shared lists are
+ * plain lists, like the ones parsed from a response, so that players can be cloned; they must not
+ * be modified.
+ */
+public class SyntheticGames {
+
+  private static final String[] DIRECTIONS = {"NORTH", "EAST", "SOUTH", "WEST"};
+  private static final List<List<String>> OPEN_TO = new ArrayList<List<String>>(16);
+  private static final int[] DX = {0, 1, 0, -1};
+  private static final int[] DY = {1, 0, -1, 0};
+
+  static {
+    for (int openings = 0; openings < 16; openings++) {
+      List<String> openTo = new ArrayList<String>(4);
+      for (int d = 0; d < 4; d++) {
+        if ((openings & (1 << d)) != 0) {
+          openTo.add(DIRECTIONS[d]);
+        }
+      }
+      OPEN_TO.add(openTo);
+    }
+  }
+
+  private SyntheticGames() {}
+
+  /**
+   * Builds a player standing at the start of a new maze.
+   *
+   * @param handle the handle of the player
+   * @param size the width and height of the maze
+   * @param seed the seed of the maze layout and contents
+   * @return {@link Player}
+   */
+  public static Player newPlayer(String handle, int size, long seed) {
+    Maze maze = newMaze(size, seed);
+    Tile start = maze.getGrid().get(0).get(0);
+    List<Pickup> baseItems = new ArrayList<Pickup>();
+    baseItems.add(newWeapon());
+    return new Player()
+        .setHandle(handle)
+        .setGameId("benchmark")
+        .setMaze(maze)
+        .setCurrentTile(start)
+        .setOrientation(start.getOpenTo().isEmpty() ? "NORTH" : start.getOpenTo().get(0))
+        .setCurrentHP(100L)
+        .setMaxHP(100L)
+        .setGemsCollected(0L)
+        .setMobsKilled(0L)
+        .setNumDeaths(0L)
+        .setBaseItems(baseItems)
+        .setPickups(new ArrayList<Pickup>(baseItems));
+  }
+
+  /**
+   * Builds a maze of the given size, with every tile reachable from every other one.
+   */
+  public static Maze newMaze(int size, long seed) {
+    Random random = new Random(seed);
+    int[] openings = carve(size, random);
+
+    List<List<Tile>> grid = new ArrayList<List<Tile>>(size);
+    List<Coordinates> gems = new ArrayList<Coordinates>();
+    for (int x = 0; x < size; x++) {
+      List<Tile> column = new ArrayList<Tile>(size);
+      for (int y = 0; y < size; y++) {
+        Tile tile = new Tile()
+            .setCoord(new Coordinates().setX(x).setY(y))
+            .setDescription("You are in a damp, dark room.")
+            .setOpenTo(OPEN_TO.get(openings[x * size + y]));
+        int roll = random.nextInt(20);
+        if (roll == 0) {
+          tile.setPickups(newList(new Pickup().setName("gem").setDescription("A shiny gem.")
+              .setMaxEffect(0L).setNumUses(1L)));
+          gems.add(new Coordinates().setX(x).setY(y));
+        } else if (roll < 3) {
+          tile.setCreatures(newList(new Creature().setName("goblin")
+              .setDescription("A goblin, and it looks hungry.").setMaxEffect(-5L)
+              .setHitPoints(20L)));
+        } else if (roll < 4) {
+          tile.setPickups(newList(new Pickup().setName("potion")
+              .setDescription("A small red potion.").setMaxEffect(15L).setNumUses(1L)));
+        }
+        column.add(tile);
+      }
+      grid.add(column);
+    }
+    return new Maze()
+        .setGrid(grid)
+        .setGemsRemaining(gems)
+        .setStartingCoordinates(new Coordinates().setX(0).setY(0));
+  }
+
+  private static Pickup newWeapon() {
+    return new Pickup().setName("sword").setDescription("A trusty sword.").setMaxEffect(-7L)
+        .setNumUses(1000000L);
+  }
+
+  private static <T> List<T> newList(T item) {
+    List<T> list = new ArrayList<T>(1);
+    list.add(item);
+    return list;
+  }
+
+  /**
+   * Carves the passages of a perfect maze with an iterative depth-first search.
+   *
+   * @return the openings bitmask of every tile, indexed by {@code x * size + y}
+   */
+  private static int[] carve(int size, Random random) {
+    int[] openings = new int[size * size];
+    boolean[] visited = new boolean[size * size];
+    int[] stack = new int[size * size];
+    int top = 0;
+    stack[top++] = 0;
+    visited[0] = true;
+    int[] candidates = new int[4];
+    while (top > 0) {
+      int current = stack[top - 1];
+      int x = current / size;
+      int y = current % size;
+      int count = 0;
+      for (int d = 0; d < 4; d++) {
+        int nx = x + DX[d];
+        int ny = y + DY[d];
+        if (nx >= 0 && nx < size && ny >= 0 && ny < size && !visited[nx * size + ny]) {
+          candidates[count++] = d;
+        }
+      }
+      if (count == 0) {
+        top--;
+        continue;
+      }
+      int d = candidates[random.nextInt(count)];
+      int next = (x + DX[d]) * size + y + DY[d];
+      openings[current] |= 1 << d;
+      openings[next] |= 1 << ((d + 2) & 3);
+      visited[next] = true;
+      stack[top++] = next;
+    }
+    return openings;
+  }
+}
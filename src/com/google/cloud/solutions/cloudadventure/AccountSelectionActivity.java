@@ -16,12 +16,13 @@
 
 package com.google.cloud.solutions.cloudadventure;
 
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.services.cloudadventure.Cloudadventure;
 import com.google.api.services.cloudadventure.model.GameUser;
 import com.google.api.services.cloudadventure.model.Handle;
-import com.google.cloud.solutions.cloudadventure.util.CloudEndpointUtils;
+import com.google.cloud.solutions.cloudadventure.backend.UserBackend;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler.Priority;
+import com.google.cloud.solutions.cloudadventure.util.EndpointService;
+import com.google.cloud.solutions.cloudadventure.util.GameUserCache;
 import com.google.cloud.solutions.cloudadventure.util.Constants;
 import com.google.cloud.solutions.cloudadventure.widget.OkDialogFragment;
 import com.google.cloud.solutions.cloudadventure.widget.OkDialogFragment.OkDialogListener;
@@ -34,6 +35,7 @@ import android.app.ProgressDialog;
 import android.content.Intent;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.AdapterView;
@@ -53,9 +55,9 @@ import java.util.List;
  */
 public class AccountSelectionActivity extends Activity implements OkDialogListener {
   /*
-   * Endpoint service.
+   * Sign-in backend.
    */
-  private Cloudadventure service;
+  private UserBackend userBackend;
 
   private GameUser currentUser;
   private String currentAccount;
@@ -99,15 +101,19 @@ public class AccountSelectionActivity extends Activity implements OkDialogListen
       @Override
       public void onItemClick(AdapterView<?> adapter, View v, int position, long id) {
         currentAccount = (String) adapter.getItemAtPosition(position);
-        new GetUserFromAccount().execute(currentAccount);
+        EndpointScheduler.execute(AccountSelectionActivity.this, Priority.CRITICAL,
+            new SignIn(), currentAccount);
       }
     });
 
-    // Build the endpoint service
-    Cloudadventure.Builder builder =
-        new Cloudadventure.Builder(AndroidHttp.newCompatibleTransport(), new GsonFactory(), null);
-    CloudEndpointUtils.updateBuilder(builder);
-    service = builder.build();
+    // Get the backend that users sign in with
+    userBackend = EndpointService.getUserBackend();
+  }
+
+  @Override
+  protected void onDestroy() {
+    EndpointScheduler.cancelAll(this);
+    super.onDestroy();
   }
 
   /**
@@ -117,7 +123,8 @@ public class AccountSelectionActivity extends Activity implements OkDialogListen
    */
   private void finishSelection() {
     if (currentUser.getHandle() == null || currentUser.getHandle().isEmpty()) {
-      new ClaimUserHandle().execute(handleEdit.getText().toString());
+      EndpointScheduler.execute(this, Priority.CRITICAL, new ClaimUserHandle(),
+          handleEdit.getText().toString());
     } else {
       Intent intent = new Intent();
       intent.putExtra(Constants.USER_ACCT_INTENT_EXTRA_KEY, currentUser.getAccount());
@@ -168,11 +175,16 @@ public class AccountSelectionActivity extends Activity implements OkDialogListen
    * AsyncTasks.
    */
 
-  private class GetUserFromAccount extends AsyncTask<String, Void, GameUser> {
+  /**
+   * Finds the user of the selected account, creating it if there is none, in one background task.
+   */
+  private class SignIn extends AsyncTask<String, Void, GameUser> {
     private boolean exception = false;
+    private long startedAt;
 
     @Override
     protected void onPreExecute() {
+      startedAt = SystemClock.elapsedRealtime();
       progressDialog.show();
     }
 
@@ -180,10 +192,9 @@ public class AccountSelectionActivity extends Activity implements OkDialogListen
     protected GameUser doInBackground(String... userAccts) {
       GameUser user = null;
       try {
-        String userAcct = userAccts[0];
-        user = service.users().get(userAcct).execute();
+        user = userBackend.signIn(userAccts[0]);
       } catch (IOException e) {
-        Log.e("AccountSelectionActivity", "GetUserFromAccount error: " + e.getMessage(), e);
+        Log.e("AccountSelectionActivity", "SignIn error: " + e.getMessage(), e);
         exception = true;
       }
 
@@ -193,56 +204,29 @@ public class AccountSelectionActivity extends Activity implements OkDialogListen
     @Override
     protected void onPostExecute(GameUser user) {
       progressDialog.dismiss();
+      Log.i("AccountSelectionActivity",
+          "Sign-in took " + (SystemClock.elapsedRealtime() - startedAt) + " ms");
       if (!exception) {  // no exception thrown
-        if (user != null
-            && !user.containsKey("error_message")) {  // endpoint return value was not null
-          Log.i("AccountSelectionActivity", "Found existing user: " + user);
-          setCurrentUser(user);
-        } else {
-          Log.i("AccountSelectionActivity", "No existing user with account: " + currentAccount);
-          new CreateNewUser().execute(currentAccount);
-        }
-      }
-    }
-  }
-
-  private class CreateNewUser extends AsyncTask<String, Void, GameUser> {
-    private boolean mException = false;
-
-    @Override
-    protected void onPreExecute() {
-      progressDialog.show();
-    }
-
-    @Override
-    protected GameUser doInBackground(String... userAccts) {
-      GameUser user = null;
-      try {
-        user = service.users().create(userAccts[0]).execute();
-      } catch (IOException e) {
-        Log.e("AccountSelectionActivity", "CreateNewUser error: " + e.getMessage(), e);
-        mException = true;
-      }
-
-      return user;
-    }
-
-    @Override
-    protected void onPostExecute(GameUser user) {
-      progressDialog.dismiss();
-      if (!mException) {
-        Log.i("AccountSelectionActivity", "Created user account: " + currentAccount);
+        Log.i("AccountSelectionActivity", "Signed in user: " + user);
         setCurrentUser(user);
       }
     }
   }
 
+  /**
+   * Claims the handle and, once it is claimed, saves it to the user before anything else can load
+   * the user by that handle.
+   */
   private class ClaimUserHandle extends AsyncTask<String, Void, Handle> {
     private boolean mException = false;
     private String currentHandle;
+    private GameUser user;
+    private long startedAt;
 
     @Override
     protected void onPreExecute() {
+      startedAt = SystemClock.elapsedRealtime();
+      user = currentUser.clone();
       progressDialog.show();
     }
     @Override
@@ -250,10 +234,20 @@ public class AccountSelectionActivity extends Activity implements OkDialogListen
       Handle handle = null;
       try {
         currentHandle = handles[0];
-        handle = service.handles().claim(currentHandle).execute();
+        handle = userBackend.claimHandle(currentHandle);
       } catch (IOException e) {
         Log.e("AccountSelectionActivity", "ClaimUserHandle error: " + e.getMessage(), e);
         mException = true;
+        return null;
+      }
+      if (!handle.getHandle().equals(UserBackend.HANDLE_TAKEN)) {
+        try {
+          user.setHandle(currentHandle);
+          userBackend.updateUser(user);
+          GameUserCache.get().invalidate(currentHandle);
+        } catch (IOException e) {
+          Log.e("AccountSelectionActivity", "UpdateUser error: " + e.getMessage(), e);
+        }
       }
       return handle;
     }
@@ -261,10 +255,10 @@ public class AccountSelectionActivity extends Activity implements OkDialogListen
     @Override
     protected void onPostExecute(Handle handle) {
       progressDialog.dismiss();
-      if (!mException  // no exception thrown
-          && handle != null
-          && !handle.containsKey("error_message")) {  // endpoint return value was not null
-        if (handle.getHandle().equals("!")) {
+      Log.i("AccountSelectionActivity",
+          "Handle claim took " + (SystemClock.elapsedRealtime() - startedAt) + " ms");
+      if (!mException) {  // no exception thrown
+        if (handle.getHandle().equals(UserBackend.HANDLE_TAKEN)) {
           Log.i("AccountSelectionActivity",
               "The handle " + currentHandle + " has already been taken.");
           OkDialogFragment dialog = new OkDialogFragment();
@@ -274,22 +268,9 @@ public class AccountSelectionActivity extends Activity implements OkDialogListen
         } else {
           Log.i("AccountSelectionAcitivty", "Unique handle claimed: " + currentHandle);
           currentUser.setHandle(currentHandle);
-          new UpdateUser().execute(currentUser);
           finishSelection();
         }
       }
     }
   }
-
-  private class UpdateUser extends AsyncTask<GameUser, Void, Void> {
-    @Override
-    protected Void doInBackground(GameUser... users) {
-      try {
-        service.users().update(users[0]).execute();
-      } catch (IOException e) {
-        Log.e("AccountSelectionActivity", "UpdateUser error: " + e.getMessage(), e);
-      }
-      return null;
-    }
-  }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure;
+
+import com.google.cloud.solutions.cloudadventure.util.EndpointConfig;
+import com.google.cloud.solutions.cloudadventure.util.GameUserCache;
+
+import android.app.Application;
+
+/**
+ * Sets up the process-wide state of the application before any Activity, Service or receiver
+ * runs.
+ */
+public class CloudAdventureApplication extends Application {
+
+  @Override
+  public void onCreate() {
+    super.onCreate();
+    EndpointConfig.init(this);
+    GameUserCache.init(this);
+  }
+}
@@ -16,14 +16,16 @@
 
 package com.google.cloud.solutions.cloudadventure;
 
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.cloudadventure.Cloudadventure;
 import com.google.api.services.cloudadventure.model.Game;
 import com.google.api.services.cloudadventure.model.GameMessage;
 import com.google.api.services.cloudadventure.model.GameUser;
 import com.google.api.services.cloudadventure.model.Player;
-import com.google.cloud.solutions.cloudadventure.util.CloudEndpointUtils;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler.Priority;
+import com.google.cloud.solutions.cloudadventure.util.EndpointService;
+import com.google.cloud.solutions.cloudadventure.util.GameUserCache;
+import com.google.cloud.solutions.cloudadventure.util.SingleFlight;
 import com.google.cloud.solutions.cloudadventure.util.Constants;
 import com.google.cloud.solutions.cloudadventure.widget.OkDialogFragment;
 import com.google.cloud.solutions.cloudadventure.widget.OkDialogFragment.OkDialogListener;
@@ -88,26 +90,45 @@ public class CustomizeGameActivity extends Activity implements OkDialogListener
     adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
     mSpinner.setAdapter(adapter);
 
-    // Build the endpoint service
-    Cloudadventure.Builder builder =
-        new Cloudadventure.Builder(AndroidHttp.newCompatibleTransport(), new GsonFactory(), null);
-    CloudEndpointUtils.updateBuilder(builder);
-    mService = builder.build();
+    // Get the shared endpoint service
+    mService = EndpointService.get();
 
     // Handle user logic
     mCurrentUserHandle = getIntent().getStringExtra(Constants.USER_HANDLE_INTENT_EXTRA_KEY);
 
-    new SetUserFromHandle().execute(mCurrentUserHandle);
+    EndpointScheduler.execute(this, Priority.NORMAL, new SetUserFromHandle(), mCurrentUserHandle);
   }
 
-  private void finishSettingView() {
-    List<String> friendsList = mCurrentUser.getFriends();
-    mFriendsListView = (ListView) findViewById(R.id.friends_list_select);
-    mFriendsListView.setAdapter(
-        new ArrayAdapter<String>(
-            this, android.R.layout.simple_list_item_multiple_choice, friendsList));
+  @Override
+  protected void onDestroy() {
+    Log.d("CustomizeGameActiviy State", "onDestroy");
+    EndpointScheduler.cancelAll(this);
+    super.onDestroy();
+  }
+
+  /**
+   * Shows the friends of the given user, unless they are already shown, so that friends checked
+   * from the cached user stay checked when the current one arrives.
+   */
+  private void setCurrentUser(GameUser user) {
+    if (user.getFriends() == null) {
+      user.setFriends(new ArrayList<String>());
+    }
+    boolean friendsChanged =
+        mCurrentUser == null || !mCurrentUser.getFriends().equals(user.getFriends());
+    mCurrentUser = user;
+    if (friendsChanged) {
+      List<String> friendsList = mCurrentUser.getFriends();
+      mFriendsListView = (ListView) findViewById(R.id.friends_list_select);
+      mFriendsListView.setAdapter(
+          new ArrayAdapter<String>(
+              this, android.R.layout.simple_list_item_multiple_choice, friendsList));
+    }
+  }
 
-    new CheckForGameStatus().execute(mCurrentUserHandle);
+  private void finishSettingView() {
+    EndpointScheduler.execute(
+        this, Priority.NORMAL, new CheckForGameStatus(), mCurrentUserHandle);
   }
 
   private void startGameActivity(String gameId) {
@@ -137,7 +158,7 @@ public class CustomizeGameActivity extends Activity implements OkDialogListener
     String selectedMazeType = mSpinner.getSelectedItem().toString();
     Log.i("CustomizeGameActivity", "Selected maze: " + selectedMazeType);
 
-    new CreateGame().execute(selectedMazeType);
+    EndpointScheduler.execute(this, Priority.CRITICAL, new CreateGame(), selectedMazeType);
   }
 
   @Override
@@ -161,7 +182,7 @@ public class CustomizeGameActivity extends Activity implements OkDialogListener
     protected Player doInBackground(String... handles) {
       Player player = null;
       try {
-        player = mService.players().checkGame(handles[0]).execute();
+        player = SingleFlight.execute(mService.players().checkGame(handles[0]));
       } catch (IOException e) {
         Log.e("ProfileActivity", "CheckForGameStatus error: " + e.getMessage(), e);
         mException = true;
@@ -194,7 +215,8 @@ public class CustomizeGameActivity extends Activity implements OkDialogListener
             .setNegativeButton(R.string.dialog_abandon_button,
                 new DialogInterface.OnClickListener() {
                   public void onClick(DialogInterface dialog, int id) {
-                    new RemovePlayerAndCleanUp().execute(mCurrentUserHandle);
+                    EndpointScheduler.execute(null, Priority.CRITICAL,
+                        new RemovePlayerAndCleanUp(), mCurrentUserHandle);
                   }
                 });
         builder.create().show();
@@ -214,7 +236,10 @@ public class CustomizeGameActivity extends Activity implements OkDialogListener
     }
   }
 
-  private class SetUserFromHandle extends AsyncTask<String, Void, GameUser> {
+  /**
+   * Shows the cached user, if there is one, while the current one is fetched.
+   */
+  private class SetUserFromHandle extends AsyncTask<String, GameUser, GameUser> {
     private boolean mException = false;
     @Override
     protected void onPreExecute() {
@@ -223,9 +248,14 @@ public class CustomizeGameActivity extends Activity implements OkDialogListener
 
     @Override
     protected GameUser doInBackground(String... userHandles) {
+      GameUserCache cache = GameUserCache.get();
+      GameUser cached = cache.peek(userHandles[0]);
+      if (cached != null) {
+        publishProgress(cached);
+      }
       GameUser user = null;
       try {
-        user = mService.users().getByHandle(userHandles[0]).execute();
+        user = cache.getByHandle(userHandles[0]);
       } catch (IOException e) {
         Log.e("CustomizeGameActivity", "SetUserFromHandle error: " + e.getMessage(), e);
         mException = true;
@@ -234,16 +264,22 @@ public class CustomizeGameActivity extends Activity implements OkDialogListener
       return user;
     }
 
+    @Override
+    protected void onProgressUpdate(GameUser... cached) {
+      mProgressDialog.dismiss();
+      setCurrentUser(cached[0]);
+    }
+
     @Override
     protected void onPostExecute(GameUser user) {
       mProgressDialog.dismiss();
       if (!mException  // no exception thrown
           && user != null
           && !user.containsKey("error_message")) {  // endpoint return value was not null
-        if (user.getFriends() == null) {
-          user.setFriends(new ArrayList<String>());
-        }
-        mCurrentUser = user;
+        setCurrentUser(user);
+        finishSettingView();
+      } else if (mCurrentUser != null) {
+        Log.w("CustomizeGameActivity", "Showing the cached friends of " + mCurrentUserHandle);
         finishSettingView();
       } else {
         OkDialogFragment dialog = new OkDialogFragment();
@@ -286,7 +322,7 @@ public class CustomizeGameActivity extends Activity implements OkDialogListener
         startGameActivity(gameId);
         GameMessage msg = new GameMessage().setFrom(mCurrentUserHandle).setTo(mInvitedFriends)
             .setGameId(gameId);
-        new SendInvites().execute(msg);
+        EndpointScheduler.execute(null, Priority.BACKGROUND, new SendInvites(), msg);
       } else {
         OkDialogFragment dialog = new OkDialogFragment();
         dialog.setArguments(R.string.create_game_fail_title,
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure;
+
+import com.google.cloud.solutions.cloudadventure.util.EndpointStats;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.View;
+import android.view.Window;
+import android.widget.TextView;
+
+/**
+ * Debug screen showing the payload sizes and timings of the endpoint calls recorded by
+ * {@link EndpointStats}. It is opened by long-pressing the title of the main screen, in debuggable
+ * builds only.
+ */
+public class EndpointStatsActivity extends Activity {
+
+  private TextView mStatsView;
+
+  @Override
+  protected void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+
+    this.requestWindowFeature(Window.FEATURE_NO_TITLE);
+    setContentView(R.layout.activity_endpoint_stats);
+    mStatsView = (TextView) findViewById(R.id.endpoint_stats_text);
+  }
+
+  @Override
+  protected void onResume() {
+    super.onResume();
+    mStatsView.setText(EndpointStats.dump());
+  }
+
+  public void logStats(View view) {
+    EndpointStats.log();
+  }
+
+  public void resetStats(View view) {
+    EndpointStats.reset();
+    mStatsView.setText(EndpointStats.dump());
+  }
+}
@@ -18,11 +18,6 @@ package com.google.cloud.solutions.cloudadventure;
 
 import com.google.android.gcm.GCMBaseIntentService;
 import com.google.android.gcm.GCMRegistrar;
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.http.HttpRequest;
-import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.client.json.jackson.JacksonFactory;
 
 import java.io.IOException;
 
@@ -36,10 +31,14 @@ import android.support.v4.app.TaskStackBuilder;
 import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
 
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.cloudadventure.Cloudadventure;
-import com.google.api.services.cloudadventure.Cloudadventure.Builder;
 import com.google.api.services.cloudadventure.model.DeviceInfo;
-import com.google.cloud.solutions.cloudadventure.util.CloudEndpointUtils;
+import com.google.cloud.solutions.cloudadventure.util.DeviceRegistrationLedger;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler.Priority;
+import com.google.cloud.solutions.cloudadventure.util.EndpointService;
+import com.google.cloud.solutions.cloudadventure.util.GameUserCache;
 import com.google.cloud.solutions.cloudadventure.util.Constants;
 
 /**
@@ -81,7 +80,9 @@ public class GCMIntentService extends GCMBaseIntentService {
   public static final String BROADCAST_ON_MESSAGE_PLAYER_END_STATS = "on-message-stats-event";
 
   /**
-   * Register the device for GCM.
+   * Register the device for GCM. The registration is only sent to the backend if it is not already
+   * in the {@link DeviceRegistrationLedger}; a new registration id is sent by
+   * {@link #onRegistered}.
    *
    * @param mContext the activity context
    * @param userHandle
@@ -93,8 +94,13 @@ public class GCMIntentService extends GCMBaseIntentService {
     final String regId = GCMRegistrar.getRegistrationId(mContext);
     if (regId.equals("")) {
       GCMRegistrar.register(mContext, SENDER_ID);
+    } else if (new DeviceRegistrationLedger(mContext).isConfirmed(userHandle, regId)) {
+      Log.i("GCMIntentService",
+          "User: " + userHandle + " is already associated with this device for GCM.");
+    } else {
+      EndpointScheduler.execute(null, Priority.BACKGROUND,
+          new HandleDeviceRegistration(mContext.getApplicationContext()), userHandle, regId);
     }
-    new HandleDeviceRegistration().execute(userHandle, regId);
   }
 
   /**
@@ -111,12 +117,7 @@ public class GCMIntentService extends GCMBaseIntentService {
 
   public GCMIntentService() {
     super(SENDER_ID);
-    Builder endpointBuilder = new Cloudadventure.Builder(AndroidHttp.newCompatibleTransport(),
-        new JacksonFactory(), new HttpRequestInitializer() {
-          public void initialize(HttpRequest httpRequest) {
-          }
-        });
-    endpoint = CloudEndpointUtils.updateBuilder(endpointBuilder).build();
+    endpoint = EndpointService.get();
   }
 
   /**
@@ -136,11 +137,13 @@ public class GCMIntentService extends GCMBaseIntentService {
   public void onMessage(Context context, Intent intent) {
     if (PING_REASON_FRIEND_INVITE.equals(intent.getStringExtra(GCM_PAYLOAD_PING_REASON))) {
       Log.i("GCMIntentService", "Received ping for friend invite.");
+      invalidateUsers(intent);
       Intent resultIntent = new Intent(context, ProfileActivity.class);
       resultIntent.putExtras(intent);
       generateNotification(context, resultIntent, ProfileActivity.class);
     } else if (PING_REASON_FRIEND_ACCEPT.equals(intent.getStringExtra(GCM_PAYLOAD_PING_REASON))) {
       Log.i("GCMIntentService", "Received ping for friend acceptance.");
+      invalidateUsers(intent);
       Intent resultIntent = new Intent(context, ProfileActivity.class);
       resultIntent.putExtras(intent);
       generateNotification(context, resultIntent, ProfileActivity.class);
@@ -194,10 +197,8 @@ public class GCMIntentService extends GCMBaseIntentService {
   @Override
   public void onRegistered(Context context, String regId) {
     try {
-      DeviceInfo deviceInfo = new DeviceInfo()
-        .setUserHandle(userHandleString)
-        .setDeviceRegistrationId(regId);
-      endpoint.devices().insert(deviceInfo).execute();
+      storeRegistration(
+          endpoint, new DeviceRegistrationLedger(context), userHandleString, regId);
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -210,6 +211,7 @@ public class GCMIntentService extends GCMBaseIntentService {
    */
   @Override
   protected void onUnregistered(Context context, String regId) {
+    new DeviceRegistrationLedger(context).clear();
     try {
       endpoint.devices().remove(userHandleString).execute();
     } catch (IOException e) {
@@ -218,30 +220,16 @@ public class GCMIntentService extends GCMBaseIntentService {
   }
 
   private static class HandleDeviceRegistration extends AsyncTask<String, Void, Void> {
+    private final DeviceRegistrationLedger ledger;
+
+    HandleDeviceRegistration(Context context) {
+      ledger = new DeviceRegistrationLedger(context);
+    }
+
     @Override
     protected Void doInBackground(String... ids) {
-      Cloudadventure.Builder builder =
-          new Cloudadventure.Builder(
-              AndroidHttp.newCompatibleTransport(), new GsonFactory(), null);
-      CloudEndpointUtils.updateBuilder(builder);
-      Cloudadventure service = builder.build();
-
       try {
-        DeviceInfo deviceInfo = service.devices().get(ids[0]).execute();
-        if (deviceInfoIsEmpty(deviceInfo)) {
-          Log.i("GCMIntentService",
-              "Associating user " + ids[0] + " with this device for GCM registration.");
-          deviceInfo = new DeviceInfo().setUserHandle(ids[0]).setDeviceRegistrationId(ids[1]);
-          service.devices().insert(deviceInfo).execute();
-        } else if (!ids[1].equals(deviceInfo.getDeviceRegistrationId())) {
-          Log.i("GCMIntentService",
-              "Associating user " + ids[0] + " with this device for GCM registration.");
-          deviceInfo = new DeviceInfo().setUserHandle(ids[0]).setDeviceRegistrationId(ids[1]);
-          service.devices().update(deviceInfo).execute();
-        } else {
-          Log.i("GCMIntentService",
-              "User: " + ids[0] + " is already associated with this device for GCM.");
-        }
+        storeRegistration(EndpointService.get(), ledger, ids[0], ids[1]);
       } catch (IOException e) {
         Log.d("GCMIntentService", "error: " + e.getMessage(), e);
       }
@@ -249,6 +237,63 @@ public class GCMIntentService extends GCMBaseIntentService {
     }
   }
 
+  /**
+   * Associates the user with the registration id in a single call in the common case, and records
+   * it in the ledger. The backend has no upsert, so the device is updated if the ledger says the
+   * backend already knows this user on this device and inserted otherwise, and the other call is
+   * only made if the backend rejects the first, either with an error status or with an
+   * {@code error_message} in the returned device. The ledger is only confirmed once the backend
+   * has returned the device without an error.
+   */
+  private static void storeRegistration(Cloudadventure service, DeviceRegistrationLedger ledger,
+      String userHandle, String regId) throws IOException {
+    Log.i("GCMIntentService",
+        "Associating user " + userHandle + " with this device for GCM registration.");
+    DeviceInfo deviceInfo =
+        new DeviceInfo().setUserHandle(userHandle).setDeviceRegistrationId(regId);
+    boolean known = userHandle != null && userHandle.equals(ledger.getUserHandle());
+    DeviceInfo result;
+    try {
+      result = storeDevice(service, deviceInfo, known);
+    } catch (GoogleJsonResponseException e) {
+      Log.i("GCMIntentService", "Device " + (known ? "update" : "insert") + " rejected with "
+          + e.getStatusCode() + ", retrying as " + (known ? "insert" : "update"));
+      result = null;
+    }
+    if (!isStored(result)) {
+      if (result != null) {
+        Log.i("GCMIntentService", "Device " + (known ? "update" : "insert") + " rejected with "
+            + result.get("error_message") + ", retrying as " + (known ? "insert" : "update"));
+      }
+      result = storeDevice(service, deviceInfo, !known);
+    }
+    if (!isStored(result)) {
+      throw new IOException("Device registration was rejected: "
+          + (result == null ? "no device returned" : result.get("error_message")));
+    }
+    ledger.confirm(userHandle, regId);
+  }
+
+  private static DeviceInfo storeDevice(Cloudadventure service, DeviceInfo deviceInfo,
+      boolean update) throws IOException {
+    if (update) {
+      return service.devices().update(deviceInfo).execute();
+    }
+    return service.devices().insert(deviceInfo).execute();
+  }
+
+  private static boolean isStored(DeviceInfo result) {
+    return result != null && !result.containsKey("error_message");
+  }
+
+  /**
+   * Forgets the cached users that a friend invite or acceptance has changed.
+   */
+  private static void invalidateUsers(Intent intent) {
+    GameUserCache.get().invalidate(intent.getStringExtra(GCM_PAYLOAD_FROM_USER_HANDLE));
+    GameUserCache.get().invalidate(intent.getStringExtra(GCM_PAYLOAD_TO_USER_HANDLE));
+  }
+
   /**
    * Create a notification that will show up in the phone's notification bar.
    */
@@ -270,9 +315,4 @@ public class GCMIntentService extends GCMBaseIntentService {
         (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
     mNotificationManager.notify(0, mBuilder.build());
   }
-
-  private static boolean deviceInfoIsEmpty(DeviceInfo deviceInfo) {
-    return deviceInfo == null ||
-        (deviceInfo.containsKey("error_message") && !deviceInfo.containsKey("userHandle"));
-  }
 }
@@ -18,10 +18,7 @@ package com.google.cloud.solutions.cloudadventure;
 
 import static com.google.cloud.solutions.cloudadventure.util.Constants.GAME_ENTRANCE_ACTION_INTENT_EXTRA_KEY;
 
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.cloudadventure.Cloudadventure;
-import com.google.api.services.cloudadventure.model.Coordinates;
 import com.google.api.services.cloudadventure.model.Creature;
 import com.google.api.services.cloudadventure.model.Pickup;
 import com.google.api.services.cloudadventure.model.Player;
@@ -32,12 +29,25 @@ import com.google.cloud.solutions.cloudadventure.PlayerActionsFragment.OnGameAct
 import com.google.cloud.solutions.cloudadventure.PlayerInventoryFragment.OnPlayerViewListener;
 import com.google.cloud.solutions.cloudadventure.PlayerNavFragment.OnPlayerNavClickListener;
 import com.google.cloud.solutions.cloudadventure.PreGameFragment.OnPreGameClickListener;
-import com.google.cloud.solutions.cloudadventure.util.CloudEndpointUtils;
+import com.google.cloud.solutions.cloudadventure.backend.EndpointLobby;
+import com.google.cloud.solutions.cloudadventure.backend.GameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.LobbyEntry;
+import com.google.cloud.solutions.cloudadventure.backend.PlayerDelta;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler.Priority;
+import com.google.cloud.solutions.cloudadventure.util.EndpointService;
+import com.google.cloud.solutions.cloudadventure.util.GameUserCache;
+import com.google.cloud.solutions.cloudadventure.util.PlayerSnapshotStore;
+import com.google.cloud.solutions.cloudadventure.util.PlayerStreamReader;
 import com.google.cloud.solutions.cloudadventure.util.Constants;
 import com.google.cloud.solutions.cloudadventure.widget.OkDialogFragment;
 import com.google.cloud.solutions.cloudadventure.widget.OkDialogFragment.OkDialogListener;
+import com.google.cloud.solutions.cloudadventure.world.CoordinateSet;
+import com.google.cloud.solutions.cloudadventure.world.GameEngine;
 import com.google.cloud.solutions.cloudadventure.world.MapUtils;
 import com.google.cloud.solutions.cloudadventure.world.MapUtils.Cardinal;
+import com.google.cloud.solutions.cloudadventure.world.MazeIndex;
+import com.google.cloud.solutions.cloudadventure.world.PlayerChanges;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -76,10 +86,28 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * Endpoint service.
    */
   private Cloudadventure mService;
+  private GameBackend mBackend;
+  private PlayerSnapshotStore mSnapshots;
 
   private String mGameId;
   private String mHandle;
   private Player mPlayer;
+  private GameEngine mEngine;
+
+  /*
+   * Save state.
+   */
+  private final PlayerChanges mChanges = new PlayerChanges();
+  private boolean mSaveInFlight = false;
+  private boolean mSavePending = false;
+  private boolean mSavePendingNotify = false;
+  private boolean mGameOver = false;
+  private long mSavedVersion = GameBackend.NO_VERSION;
+  private boolean mResumedFromSnapshot = false;
+  private Player mSnapshotProgress;
+  // A copy of the player that only the tasks of the CRITICAL lane touch: each save applies its
+  // delta to it, then snapshots and sends it, so the UI thread never copies the whole maze
+  private Player mSaveCopy;
 
   /*
    * Fragments.
@@ -138,11 +166,10 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     LocalBroadcastManager.getInstance(this).registerReceiver(mGameEndMsgReceiver,
         new IntentFilter(GCMIntentService.BROADCAST_ON_MESSAGE_GAME_END));
 
-    // Build the endpoint service
-    Cloudadventure.Builder builder = new Cloudadventure.Builder(
-        AndroidHttp.newCompatibleTransport(), new GsonFactory(), null);
-    CloudEndpointUtils.updateBuilder(builder);
-    mService = builder.build();
+    // Get the shared endpoint service
+    mService = EndpointService.get();
+    mBackend = EndpointService.getBackend();
+    mSnapshots = new PlayerSnapshotStore(this);
 
     Intent intent = getIntent();
 
@@ -164,11 +191,22 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     }
   }
 
+  @Override
+  protected void onPause() {
+    Log.d("GameActivity State", "onPause");
+    // Autosave any unsaved progress when the player leaves the game screen
+    if (mPlayer != null && !mGameOver && mChanges.isDirty()) {
+      startSave(false);
+    }
+    super.onPause();
+  }
+
   @Override
   protected void onDestroy() {
     Log.d("GameActivity State", "onDestroy");
     LocalBroadcastManager.getInstance(this).unregisterReceiver(mStartGameMsgReceiver);
     LocalBroadcastManager.getInstance(this).unregisterReceiver(mGameEndMsgReceiver);
+    EndpointScheduler.cancelAll(this);
     super.onDestroy();
   }
 
@@ -195,7 +233,7 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     fragmentTransaction.add(R.id.game_activity, mPreGameFragment);
     fragmentTransaction.commit();
 
-    new JoinGame().execute(mGameId, mHandle);
+    EndpointScheduler.execute(this, Priority.CRITICAL, new JoinGame(), mGameId, mHandle);
   }
 
   /**
@@ -204,7 +242,7 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * Starts this game. The creator sends a request to the backend to update the game to running.
    */
   public void startGame() {
-    new StartGame().execute(mHandle, mGameId);
+    EndpointScheduler.execute(null, Priority.CRITICAL, new StartGame(), mHandle, mGameId);
     progressDialog.show();
   }
 
@@ -215,8 +253,9 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * PreGameFragment screen, by the creator of the game.
    */
   public void cancelGame() {
-    new LeaveGame().execute(mGameId, mHandle);
-    new CancelGame().execute(mGameId);
+    // Both calls go in the same lane, so the player has left before the game is cancelled
+    EndpointScheduler.execute(null, Priority.CRITICAL, new LeaveGame(), mGameId, mHandle);
+    EndpointScheduler.execute(null, Priority.CRITICAL, new CancelGame(), mGameId);
     finish();
   }
 
@@ -227,7 +266,7 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * PreGameFragment screen, by a player who is not the creator of the game.
    */
   public void leaveGame() {
-    new LeaveGame().execute(mGameId, mHandle);
+    EndpointScheduler.execute(null, Priority.CRITICAL, new LeaveGame(), mGameId, mHandle);
     finish();
   }
 
@@ -235,7 +274,61 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * Resumes the game for a player who rejoins the game after this GameActivity has been destroyed.
    */
   private void resumeGame() {
-    new GetPlayer().execute(mHandle);
+    // Show the last known state as soon as it is read, if there is one, and then ask the server
+    // for the current one
+    EndpointScheduler.execute(this, Priority.CRITICAL, new LoadSnapshot(), mHandle);
+  }
+
+  /**
+   * Tells whether the local state resumed from a snapshot can be kept over the server's player:
+   * it must be of the same game, and not behind it. Players carry no version, so the progress
+   * counters, which only ever grow during a game, tell which copy is older.
+   */
+  private boolean isSnapshotCurrent(Player server) {
+    Player snapshot = mSnapshotProgress;
+    return snapshot != null
+        && snapshot.getGameId() != null && snapshot.getGameId().equals(server.getGameId())
+        && !isBehind(snapshot.getGemsCollected(), server.getGemsCollected())
+        && !isBehind(snapshot.getMobsKilled(), server.getMobsKilled())
+        && !isBehind(snapshot.getNumDeaths(), server.getNumDeaths());
+  }
+
+  private static boolean isBehind(Long local, Long server) {
+    return (local == null ? 0 : local) < (server == null ? 0 : server);
+  }
+
+  /**
+   * Sets the current player of this game, with a {@link MazeIndex} already built for its maze and
+   * a separate copy of the player for the saves, and starts a {@link GameEngine} for them.
+   */
+  private void setPlayer(Player player, MazeIndex mazeIndex, Player saveCopy) {
+    mPlayer = player;
+    mSaveCopy = saveCopy;
+    mEngine = new GameEngine(player, mazeIndex, mChanges);
+    mGameId = player.getGameId();
+  }
+
+  /**
+   * Shows the players who have joined the game so far in the lobby.
+   *
+   * @param players the players returned on joining, or {@code null} if they could not be listed
+   */
+  private void showJoinedPlayers(PlayerCollection players) {
+    ArrayList<String> currentlyJoined = new ArrayList<String>();
+    if (players != null
+        && !players.containsKey("error_message")) {  // endpoint return value was not null
+      if (players.containsKey("items")) {  // endpoint returned a non-empty list
+        for (Player player : players.getItems()) {
+          currentlyJoined.add(player.getHandle());
+        }
+      } else {
+        Log.i("GameActivity", "No players have joined this game yet.");
+      }
+      mPreGameFragment.addCurrentPlayers(currentlyJoined);
+      Log.i("GameActivity", "Players " + currentlyJoined + " have joined this game so far.");
+    } else {
+      Log.w("GameActivity", "Someting went wrong. Unable to find current players.");
+    }
   }
 
   /**
@@ -243,7 +336,7 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * to all players.
    */
   private void endGame() {
-    new EndGame().execute(mHandle, mGameId);
+    EndpointScheduler.execute(null, Priority.CRITICAL, new EndGame(), mHandle, mGameId);
   }
 
   /**
@@ -259,7 +352,7 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
 
     // Set the starting point for fragments
     mNavFragment.setNewDirectionMapper(Cardinal.valueOf(mPlayer.getOrientation()));
-    mNavFragment.setCurrentTile(mPlayer.getCurrentTile());
+    mNavFragment.setCurrentTileOpenings(mEngine.getCurrentOpenings());
   }
 
   /**
@@ -267,7 +360,7 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    */
   private void onGameResume() {
     mNavFragment.setNewDirectionMapper(Cardinal.valueOf(mPlayer.getOrientation()));
-    mNavFragment.setCurrentTile(mPlayer.getCurrentTile());
+    mNavFragment.setCurrentTileOpenings(mEngine.getCurrentOpenings());
   }
 
   /**
@@ -275,6 +368,8 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * the game has ended.
    */
   private void onGameEnd() {
+    mGameOver = true;
+    mSnapshots.delete(mHandle);
     FragmentManager fragmentManager = getFragmentManager();
     FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
     mScoresFragment = new GameScoresFragment();
@@ -282,8 +377,9 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     fragmentTransaction.add(R.id.game_activity, mScoresFragment);
     fragmentTransaction.commit();
 
-    new SaveScoresAndSend().execute(mHandle, mGameId, Long.toString(mPlayer.getGemsCollected()),
-        Long.toString(mPlayer.getMobsKilled()), Long.toString(mPlayer.getNumDeaths()));
+    EndpointScheduler.execute(this, Priority.CRITICAL, new SaveScoresAndSend(), mHandle, mGameId,
+        Long.toString(mPlayer.getGemsCollected()), Long.toString(mPlayer.getMobsKilled()),
+        Long.toString(mPlayer.getNumDeaths()));
   }
 
   /**
@@ -297,21 +393,11 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * Updates the Views of the Fragments affected by the player moving onto a new {@link Tile}.
    */
   private void updateNavAndActionFragmentsViewsWithTile(Tile tile) {
-    mNavFragment.setCurrentTile(tile);
+    mNavFragment.setCurrentTileOpenings(mEngine.getCurrentOpenings());
     mActionsFragment.setCurrentTile(tile);
 
-    List<Creature> creatures = tile.getCreatures();
-    if (creatures != null && !creatures.isEmpty()) {
-      boolean ohNoesAMob = false;
-      for (Creature creature : creatures) {
-        if (ohNoesAMob || creature.getMaxEffect() < 0) {
-          ohNoesAMob = true;
-        }
-      }
-
-      if (ohNoesAMob) {
-        mNavFragment.registerCreatureDanger();
-      }
+    if (GameEngine.hasHostileCreature(tile)) {
+      mNavFragment.registerCreatureDanger();
     }
   }
 
@@ -319,48 +405,20 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    * Builds a "current surroundings" description from the information on the player's current tile.
    */
   private String getSurroundingsDescription() {
-    Log.d("GameActivity", "Number gems remaining: " + mPlayer.getMaze().getGemsRemaining().size());
-    for (Coordinates coord : mPlayer.getMaze().getGemsRemaining()) {
-      Log.d("GameActivity", "Remaining gem location: [" + coord.getX() + ", " + coord.getY() + "]");
+    if (Log.isLoggable("GameActivity", Log.DEBUG)) {
+      CoordinateSet gemsRemaining = mEngine.getGemsRemaining();
+      Log.d("GameActivity", "Number gems remaining: " + gemsRemaining.size());
+      for (long key : gemsRemaining.toKeys()) {
+        Log.d("GameActivity", "Remaining gem location: [" + CoordinateSet.unpackX(key) + ", "
+            + CoordinateSet.unpackY(key) + "]");
+      }
     }
 
-    if (checkForGameOver()) {
+    if (mEngine.isGameOver()) {
       endGame();
     }
 
-    Tile tile = mPlayer.getCurrentTile();
-    List<Creature> creatures = tile.getCreatures();
-    List<Pickup> pickups = tile.getPickups();
-
-    StringBuilder descriptionBuilder = new StringBuilder(tile.getDescription());
-    descriptionBuilder.append("\nYou are now facing " + mPlayer.getOrientation() + "\n\n");
-    if ((creatures != null && !creatures.isEmpty()) || (pickups != null && !pickups.isEmpty())) {
-      descriptionBuilder.append("Items of interest here: \n");
-      boolean ohNoesAMob = false;
-      if (creatures != null && !creatures.isEmpty()) {
-        for (Creature creature : creatures) {
-          if (ohNoesAMob || creature.getMaxEffect() < 0) {
-            ohNoesAMob = true;
-          }
-          descriptionBuilder.append(creature.getName());
-          descriptionBuilder.append("\n");
-        }
-      }
-      if (pickups != null && !pickups.isEmpty()) {
-        for (Pickup pickup : pickups) {
-          descriptionBuilder.append(pickup.getName());
-          descriptionBuilder.append("\n");
-        }
-      }
-      if (ohNoesAMob) {
-        descriptionBuilder
-            .append("Some of the creatures are blocking many or all of the passageways out.\n");
-      }
-    } else {
-      descriptionBuilder.append("\nYou are alone here.");
-    }
-
-    return descriptionBuilder.toString();
+    return MapUtils.describeSurroundings(mPlayer.getCurrentTile(), mPlayer.getOrientation());
   }
 
   /**
@@ -374,21 +432,13 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
         .setNeutralButton("OK", new DialogInterface.OnClickListener() {
           @Override
           public void onClick(DialogInterface dialog, int which) {
-            // Reset inventory fragment
-            mPlayer.setPickups(new ArrayList<Pickup>(mPlayer.getBaseItems()));
-            mPlayer.setGemsCollected(0L);
-            mPlayer.setNumDeaths(mPlayer.getNumDeaths() + 1);
-            mPlayer.setCurrentHP(mPlayer.getMaxHP());
+            mEngine.respawn();
 
             // Reset navigation and control fragments
-            Coordinates startCoordinates = mPlayer.getMaze().getStartingCoordinates();
-            Tile startTile = mPlayer.getMaze().getGrid().get(startCoordinates.getX())
-                .get(startCoordinates.getY());
-            mPlayer.setCurrentTile(startTile);
+            Tile startTile = mPlayer.getCurrentTile();
             updateNavAndActionFragmentsViewsWithTile(startTile);
 
             // New directionmapper
-            mPlayer.setOrientation(startTile.getOpenTo().get(0));
             mNavFragment.setNewDirectionMapper(Cardinal.valueOf(mPlayer.getOrientation()));
 
             // Reset map fragment
@@ -400,19 +450,6 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     dialog.show();
   }
 
-  /**
-   * Is this {@link Pickup} item a gem?
-   */
-  private boolean isGem(Pickup pickup) {
-    return "gem".equalsIgnoreCase(pickup.getName());
-  }
-  /**
-   * Checks the conditions to see if this player has completed the map objectives.
-   */
-  private boolean checkForGameOver() {
-    return mPlayer.getMaze().getGemsRemaining().isEmpty();
-  }
-
   /**
    * Listener-triggered from {@link OkDialogFragment}.
    */
@@ -461,10 +498,8 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    */
   @Override
   public void move(Cardinal direction) {
-    Tile newTile = MapUtils.getNextTile(mPlayer, direction);
-    mPlayer.setOrientation(direction.toString());
-    mPlayer.setCurrentTile(newTile);
-    updateNavAndActionFragmentsViewsWithTile(newTile);
+    mEngine.move(direction);
+    updateNavAndActionFragmentsViewsWithTile(mPlayer.getCurrentTile());
     mMapFragment.updateCommand(getString(R.string.command_move) + direction.toString());
     mMapFragment.enterCurrentCommandWithResult(getSurroundingsDescription());
     Log.i("GameActivity", mPlayer.getHandle() + " is now facing " + mPlayer.getOrientation()
@@ -493,7 +528,7 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     } else if (examinee instanceof Pickup) {
       Pickup pickup = (Pickup) examinee;
       mMapFragment.updateCommand(getString(R.string.command_examine) + pickup.getName());
-      if (isGem(pickup)) {
+      if (GameEngine.isGem(pickup)) {
         mMapFragment.enterCurrentCommandWithResult("a glittering gem. pick it up!");
       } else if (pickup.getMaxEffect() < 0) {
         mMapFragment.enterCurrentCommandWithResult(pickup.getDescription()
@@ -514,92 +549,73 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
       Creature creature = (Creature) attackee;
       mMapFragment.updateCommand(
           String.format(getString(R.string.command_fight), creature.getName(), weapon.getName()));
-      StringBuilder mapOutput = new StringBuilder();
-
-      long encounterableEffect = creature.getMaxEffect();
-      long encounterableHp = creature.getHitPoints();
-      weapon.setNumUses(weapon.getNumUses() - 1);
-
-      if (encounterableEffect >= 0) {
-        // You attack a good guy...
-        mPlayer.getCurrentTile().getCreatures().remove(creature);
+      GameEngine.Result result = mEngine.fight(creature, weapon);
+      if (result.getOutcome() == GameEngine.Outcome.PLAYER_DIED) {
+        playerDiesAndRespawns();
+        return;
+      }
+      if (result.isTileChanged()) {
         updateNavAndActionFragmentsViewsWithTile(mPlayer.getCurrentTile());
-        if (weapon.getMaxEffect() < 0) {
-          // ...with a weapon
+      }
+
+      StringBuilder mapOutput = new StringBuilder();
+      switch (result.getOutcome()) {
+        case FRIENDLY_CREATURE_KILLED:
           mapOutput.append("Wow. You killed a " + creature.getName()
               + ". This is why you can't have nice things.");
-        } else {
-          // ...with something that is not a weapon
+          break;
+        case FRIENDLY_CREATURE_LEFT:
           mapOutput.append("You throw the " + weapon.getName() + " at the " + creature.getName()
               + ". It looks at you sadly, and turns and vanishes into the darkness.");
-        }
-      } else {
-        // You attack a bad guy...
-        if (weapon.getMaxEffect() < 0) {
-          // ...with a weapon
-          encounterableHp = encounterableHp + weapon.getMaxEffect(); // player hits first
-          while (mPlayer.getCurrentHP() > 0 && encounterableHp > 0) { // battle commences
-            encounterableHp = encounterableHp + weapon.getMaxEffect();
-            mPlayer.setCurrentHP(mPlayer.getCurrentHP() + encounterableEffect);
-          }
-          if (mPlayer.getCurrentHP() > 0) {
-            mPlayer.setMobsKilled(mPlayer.getMobsKilled() + 1);
-            mPlayer.getCurrentTile().getCreatures().remove(creature);
-            updateNavAndActionFragmentsViewsWithTile(mPlayer.getCurrentTile());
-            mapOutput.append("You and the " + creature.getName()
-                + " battle it out. Eventually you stand victorious!");
-          } else {
-            playerDiesAndRespawns();
-            return;
-          }
-        } else {
-          // ...with something that is not a weapon
-          mPlayer.setCurrentHP(mPlayer.getCurrentHP() + encounterableEffect);
-          if (mPlayer.getCurrentHP() > 0) {
-            mPlayer.getPickups().remove(weapon);
-            mapOutput.append("You throw the " + weapon.getName()
-                + " at it. It is pretty useless and the " + creature.getName() + " hits you for "
-                + encounterableEffect + ". Try something else.");
-          } else {
-            playerDiesAndRespawns();
-            return;
-          }
-        }
-      }
-      if (weapon.getNumUses() > 0) {
-        mapOutput
-            .append("\n\nYour " + weapon.getName()
-                + " is a bit more battered than before, but perhaps it was worth it. "
-                + "You put it away again.");
-      } else {
-        mPlayer.getPickups().remove(weapon);
-        mapOutput
-            .append("\n\nYour " + weapon.getName()
-                + " has served you faithfully until now, "
-                + "but it has reached the end of its use and shatters.");
+          break;
+        case HOSTILE_CREATURE_DEFEATED:
+          mapOutput.append("You and the " + creature.getName()
+              + " battle it out. Eventually you stand victorious!");
+          break;
+        case HOSTILE_CREATURE_UNHARMED:
+          mapOutput.append("You throw the " + weapon.getName()
+              + " at it. It is pretty useless and the " + creature.getName() + " hits you for "
+              + result.getAmount() + ". Try something else.");
+          break;
+        default:
+          break;
       }
+      appendWeaponWear(mapOutput, weapon, result);
       mMapFragment.enterCurrentCommandWithResult(mapOutput.toString());
     } else if (attackee instanceof Pickup) {
       Pickup pickup = (Pickup) attackee;
       mMapFragment.updateCommand(
           String.format(getString(R.string.command_fight), pickup.getName(), weapon.getName()));
+      GameEngine.Result result = mEngine.fight(pickup, weapon);
       StringBuilder mapOutput =
           new StringBuilder("Don't be absurd, why would you attack the " + pickup.getName() + "?");
-      weapon.setNumUses(weapon.getNumUses() - 1);
-      if (weapon.getNumUses() > 0) {
+      if (result.isWeaponBroken()) {
+        appendWeaponWear(mapOutput, weapon, result);
+      } else {
         mapOutput.append("\n\nIt clearly didn't help you and it put a dent in your "
             + weapon.getName() + " anyway.");
-      } else {
-        mPlayer.getPickups().remove(weapon);
-        mapOutput
-            .append("\n\nYour " + weapon.getName()
-                + " has served you faithfully until now, "
-                + "but it has reached the end of its use and shatters.");
       }
       mMapFragment.enterCurrentCommandWithResult(mapOutput.toString());
     }
   }
 
+  /**
+   * Describes what a fight did to the weapon used in it.
+   */
+  private void appendWeaponWear(StringBuilder mapOutput, Pickup weapon, GameEngine.Result result) {
+    if (!result.isWeaponBroken()) {
+      mapOutput
+          .append("\n\nYour " + weapon.getName()
+              + " is a bit more battered than before, but perhaps it was worth it. "
+              + "You put it away again.");
+    } else {
+      mapOutput
+          .append("\n\nYour " + weapon.getName()
+              + " has served you faithfully until now, "
+              + "but it has reached the end of its use and shatters.");
+    }
+  }
+
   /**
    * Listener-triggered from {@link PlayerActionsFragment}.
    */
@@ -609,31 +625,27 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
       Creature creature = (Creature) talkee;
       mMapFragment.updateCommand(getString(R.string.command_talk) + creature.getName());
 
-      // Set the effect that the creature has on the player
-      long creatureEffect = creature.getMaxEffect();
-      long effectiveCreatureEffect = Math.min(creature.getMaxEffect(),
-          mPlayer.getMaxHP() - mPlayer.getCurrentHP());
-      mPlayer.setCurrentHP(mPlayer.getCurrentHP() + effectiveCreatureEffect);
-
-      if (creatureEffect < 0) {
-        if (mPlayer.getCurrentHP() > 0) {
+      GameEngine.Result result = mEngine.talkTo(creature);
+      switch (result.getOutcome()) {
+        case PLAYER_DIED:
+          playerDiesAndRespawns();
+          break;
+        case HURT:
           mMapFragment.enterCurrentCommandWithResult(
               "You try to approach to the " + creature.getName() + " and it hits you for "
-          + effectiveCreatureEffect + ". What did you think would happen?");
-        } else {
-          playerDiesAndRespawns();
-          return;
-        }
-      } else {
-        mPlayer.getCurrentTile().getCreatures().remove(creature);
-        updateNavAndActionFragmentsViewsWithTile(mPlayer.getCurrentTile());
-        mMapFragment.enterCurrentCommandWithResult("You approach the " + creature.getName()
-            + ". It doesn't say a thing but you benefit from its healing aura by "
-            + effectiveCreatureEffect + ". It smiles at you and vanishes into the darkness.");
+          + result.getAmount() + ". What did you think would happen?");
+          break;
+        default:
+          updateNavAndActionFragmentsViewsWithTile(mPlayer.getCurrentTile());
+          mMapFragment.enterCurrentCommandWithResult("You approach the " + creature.getName()
+              + ". It doesn't say a thing but you benefit from its healing aura by "
+              + result.getAmount() + ". It smiles at you and vanishes into the darkness.");
+          break;
       }
     } else if (talkee instanceof Pickup) {
       Pickup pickup = (Pickup) talkee;
       mMapFragment.updateCommand(getString(R.string.command_talk) + pickup.getName());
+      mEngine.talkTo(pickup);
       mMapFragment.enterCurrentCommandWithResult("Talking to a " + pickup.getName()
           + "? Do you often hold conversations with inanimate objects?");
     }
@@ -648,23 +660,22 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
       Creature creature = (Creature) takee;
       mMapFragment.updateCommand(getString(R.string.command_take) + creature.getName());
 
-      // This was an Creature. Get the creature and process.
-      long creatureEffect = creature.getMaxEffect();
-      mPlayer.setCurrentHP(mPlayer.getCurrentHP() + creatureEffect);
-      if (creatureEffect < 0) {
-        // Player tries to pick up a "bad guy"
-        if (mPlayer.getCurrentHP() > 0) {
+      GameEngine.Result result = mEngine.take(creature);
+      switch (result.getOutcome()) {
+        case PLAYER_DIED:
+          playerDiesAndRespawns();
+          break;
+        case HURT:
+          // Player tries to pick up a "bad guy"
           mMapFragment.enterCurrentCommandWithResult("The " + creature.getName()
               + " did not appreciate you trying to pick it up " + "and hits you for "
-              + creatureEffect + ".");
-        } else {
-          playerDiesAndRespawns();
-          return;
-        }
-      } else {
-        // Player tries to pick up a "good guy"
-        mMapFragment.enterCurrentCommandWithResult(
-            "Why are you trying to pick up a " + creature.getName() + "? Stop.");
+              + result.getAmount() + ".");
+          break;
+        default:
+          // Player tries to pick up a "good guy"
+          mMapFragment.enterCurrentCommandWithResult(
+              "Why are you trying to pick up a " + creature.getName() + "? Stop.");
+          break;
       }
     } else if (takee instanceof Pickup) {
       Pickup pickup = (Pickup) takee;
@@ -673,15 +684,12 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
 
       // If we get to here, the select item is indeed a proper Pickup, and the
       // user can add it to inventory.
-      mPlayer.getPickups().add(pickup);
+      GameEngine.Result result = mEngine.take(pickup);
       // Update the nav, control, and map fragments
-      mPlayer.getCurrentTile().getPickups().remove(pickup);
       updateNavAndActionFragmentsViewsWithTile(mPlayer.getCurrentTile());
-      if (isGem(pickup)) {
+      if (result.getOutcome() == GameEngine.Outcome.GEM_TAKEN) {
         mMapFragment
             .enterCurrentCommandWithResult("You pick up the gem and add it to your inventory. ");
-        mPlayer.getMaze().getGemsRemaining().remove(mPlayer.getCurrentTile().getCoord());
-        mPlayer.setGemsCollected(mPlayer.getGemsCollected() + 1);
       } else {
         mMapFragment.enterCurrentCommandWithResult(
             "You have added " + pickup.getName() + " to your inventory.");
@@ -696,29 +704,27 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
   public void consume(Pickup consumee) {
     mMapFragment.updateCommand(getString(R.string.command_consume) + consumee.getName());
 
-    long pickupEffect = consumee.getMaxEffect();
-    long effectivePickupEffect = Math.min(consumee.getMaxEffect(),
-        mPlayer.getMaxHP() - mPlayer.getCurrentHP());
-    mPlayer.setCurrentHP(mPlayer.getCurrentHP() + effectivePickupEffect);
-    if (pickupEffect < 0) {
-      // Player tries to consume a weapon
-      if (mPlayer.getCurrentHP() > 0) {
+    GameEngine.Result result = mEngine.consume(consumee);
+    switch (result.getOutcome()) {
+      case PLAYER_DIED:
+        playerDiesAndRespawns();
+        break;
+      case HURT:
+        // Player tries to consume a weapon
         mMapFragment.enterCurrentCommandWithResult("You tried to consume a " + consumee.getName()
             + ". I mean, whatever floats your boat, but that just walloped you for "
-            + effectivePickupEffect + ".");
-      } else {
-        playerDiesAndRespawns();
-        return;
-      }
-    } else if (pickupEffect > 0) {
-      // Player consumes a healing item
-      mPlayer.getPickups().remove(consumee);
-      mMapFragment.enterCurrentCommandWithResult(
-          "Good call. That just revived you for " + effectivePickupEffect + ".");
-    } else {
-      // Player tries to consume something with zero effect
-      mMapFragment.enterCurrentCommandWithResult(
-          "You tried to consume a " + consumee.getName() + ". Weird.");
+            + result.getAmount() + ".");
+        break;
+      case HEALED:
+        // Player consumes a healing item
+        mMapFragment.enterCurrentCommandWithResult(
+            "Good call. That just revived you for " + result.getAmount() + ".");
+        break;
+      default:
+        // Player tries to consume something with zero effect
+        mMapFragment.enterCurrentCommandWithResult(
+            "You tried to consume a " + consumee.getName() + ". Weird.");
+        break;
     }
   }
 
@@ -727,17 +733,50 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
    */
   @Override
   public void save() {
-    new SavePlayer().execute(mPlayer);
+    if (!mChanges.isDirty() && !mSaveInFlight) {
+      Toast.makeText(GameActivity.this, R.string.toast_saved_game, Toast.LENGTH_SHORT).show();
+    } else {
+      startSave(true);
+    }
     mMapFragment.updateCommand(getString(R.string.command_save));
     mMapFragment.enterCurrentCommandWithResult("");
   }
 
+  /**
+   * Saves the player, unless a save is already in flight. In that case, another save is sent once
+   * the current one has finished, so that repeated saves are coalesced into at most one more
+   * request.
+   *
+   * @param notify whether to show the outcome of the save to the user
+   */
+  private void startSave(boolean notify) {
+    if (mSaveInFlight) {
+      mSavePending = true;
+      mSavePendingNotify |= notify;
+      return;
+    }
+    mSaveInFlight = true;
+    mEngine.syncGemsRemaining();
+    PlayerChanges changes = mChanges.drain();
+    // Only the changed parts of the player are copied here; the save applies them to its own copy
+    PlayerDelta delta =
+        PlayerDelta.from(mPlayer, mEngine.getMazeIndex(), changes, mSavedVersion);
+    EndpointScheduler.execute(
+        null, Priority.CRITICAL, new SavePlayer(changes, delta, notify), mSaveCopy);
+  }
+
   /*
    * AsyncTasks.
    */
 
-  private class JoinGame extends AsyncTask<String, Void, Player> {
+  /**
+   * Joins the game and lists the players already in its lobby, in one round trip when the backend
+   * supports it.
+   */
+  private class JoinGame extends AsyncTask<String, Void, LobbyEntry> {
     private boolean mException = false;
+    private MazeIndex mIndex;
+    private Player mCopy;
 
     @Override
     protected void onPreExecute() {
@@ -745,34 +784,34 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     }
 
     @Override
-    protected Player doInBackground(String... ids) {
-      Player player = null;
+    protected LobbyEntry doInBackground(String... ids) {
+      LobbyEntry entry = null;
       try {
-        player = mService.players().joinGame(ids[0], ids[1]).execute();
+        entry = new EndpointLobby(mService).joinGame(ids[0], ids[1]);
+        Player player = entry.getPlayer();
+        if (player != null && player.getMaze() != null) {
+          mIndex = MazeIndex.from(player.getMaze());
+          mCopy = player.clone();
+        }
       } catch (IOException e) {
         Log.d("GameActivity", "error: " + e.getMessage(), e);
         mException = true;
       }
 
-      return player;
+      return entry;
     }
 
     @Override
-    protected void onPostExecute(Player player) {
+    protected void onPostExecute(LobbyEntry entry) {
       writeHandleToSharedPrefs(mHandle);
       progressDialog.dismiss();
       if (!mException) {  // no exception thrown
+        Player player = entry.getPlayer();
         if (player != null
             && !player.containsKey("error_message")) {  // endpoint return value was not null
           Log.i("GameActivity", "New player: " + player + " added to game " + player.getGameId());
-          mPlayer = player;
-          if (mPlayer.getPickups() == null) {
-            mPlayer.setPickups(new ArrayList<Pickup>());
-          }
-          if (mPlayer.getBaseItems() == null) {
-            mPlayer.setBaseItems(new ArrayList<Pickup>());
-          }
-          new NotifyJoin().execute(mGameId, mHandle);
+          setPlayer(player, mIndex, mCopy);
+          showJoinedPlayers(entry.getPlayers());
         } else {
           Log.i("GameActivity", "The game either no longer exists or is already in progress.");
           OkDialogFragment dialog = new OkDialogFragment();
@@ -788,55 +827,75 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     }
   }
 
-  private class NotifyJoin extends AsyncTask<String, Void, PlayerCollection> {
-    private boolean mException = false;
+  /**
+   * Reads the player's snapshot and indexes its maze off the UI thread, shows it, and then fetches
+   * the player from the server.
+   */
+  private class LoadSnapshot extends AsyncTask<String, Void, Player> {
+    private MazeIndex mIndex;
+    private Player mCopy;
 
     @Override
-    protected PlayerCollection doInBackground(String... ids) {
-      PlayerCollection players = null;
-      try {
-        players = mService.players().notifyJoin(ids[0], ids[1]).execute();
-      } catch (IOException e) {
-        Log.d("GameActivity", "NotifyJoin error: " + e.getMessage());
-        mException = true;
+    protected Player doInBackground(String... handles) {
+      Player snapshot = mSnapshots.read(handles[0]);
+      if (snapshot != null) {
+        mIndex = MazeIndex.from(snapshot.getMaze());
+        mCopy = snapshot.clone();
       }
-      return players;
+      return snapshot;
     }
 
     @Override
-    protected void onPostExecute(PlayerCollection players) {
-      ArrayList<String> currentlyJoined = new ArrayList<String>();
-      if (!mException  // no exception thrown
-          && players != null
-          && !players.containsKey("error_message")) {  // endpoint return value was not null
-        if (players.containsKey("items")) {  // endpoint returned a non-empty list
-          for (Player player : players.getItems()) {
-            currentlyJoined.add(player.getHandle());
-          }
-        } else {
-          Log.i("GameActivity", "No players have joined this game yet.");
-        }
-        mPreGameFragment.addCurrentPlayers(currentlyJoined);
-        Log.i("GameActivity", "Players " + currentlyJoined + " have joined this game so far.");
-      } else {
-        Log.w("GameActivity", "Someting went wrong. Unable to find current players.");
+    protected void onPostExecute(Player snapshot) {
+      if (snapshot != null) {
+        Log.i("GameActivity", "Resuming from snapshot of player: " + mHandle);
+        mSnapshotProgress = new Player()
+            .setGameId(snapshot.getGameId())
+            .setGemsCollected(snapshot.getGemsCollected())
+            .setMobsKilled(snapshot.getMobsKilled())
+            .setNumDeaths(snapshot.getNumDeaths());
+        setPlayer(snapshot, mIndex, mCopy);
+        mResumedFromSnapshot = true;
+        onGameResume();
       }
+      EndpointScheduler.execute(GameActivity.this, Priority.CRITICAL, new GetPlayer(), mHandle);
+    }
+  }
+
+  /**
+   * Replaces the player's snapshot with the save copy of the player, off the UI thread.
+   */
+  private class WriteSnapshot extends AsyncTask<Player, Void, Void> {
+    @Override
+    protected Void doInBackground(Player... players) {
+      mSnapshots.write(players[0]);
+      return null;
     }
   }
 
-  private class GetPlayer extends AsyncTask<String, Void, Player> {
+  private class GetPlayer extends AsyncTask<String, Tile, Player>
+      implements PlayerStreamReader.Listener {
     private boolean mException = false;
+    private MazeIndex mIndex;
+    private Player mCopy;
 
     @Override
     protected void onPreExecute() {
-      progressDialog.show();
+      if (!mResumedFromSnapshot) {
+        progressDialog.show();
+      }
     }
 
     @Override
     protected Player doInBackground(String... ids) {
       Player player = null;
       try {
-        player = mService.players().get(ids[0]).execute();
+        player = PlayerStreamReader.read(mService.getJsonFactory(),
+            mService.players().get(ids[0]).executeUnparsed(), this);
+        if (player != null && !player.containsKey("error_message")) {
+          mIndex = MazeIndex.from(player.getMaze());
+          mCopy = player.clone();
+        }
       } catch (IOException e) {
         Log.d("GameActivity", "GetPlayer error: " + e.getMessage(), e);
         mException = true;
@@ -845,6 +904,20 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
       return player;
     }
 
+    @Override
+    public void onCurrentTile(Tile tile) {
+      publishProgress(tile);
+    }
+
+    @Override
+    protected void onProgressUpdate(Tile... tiles) {
+      // Show what is on the current tile behind the progress dialog while the rest of the maze is
+      // still being read
+      if (!mResumedFromSnapshot) {
+        mActionsFragment.setCurrentTile(tiles[0]);
+      }
+    }
+
     @Override
     protected void onPostExecute(Player player) {
       progressDialog.dismiss();
@@ -852,21 +925,35 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
         if (player != null
             && !player.containsKey("error_message")) {  // endpoint return value was not null
           Log.i("GameActivity", "Retrieved player: " + player);
-          if (player.getPickups() == null) {
-            player.setPickups(new ArrayList<Pickup>());
-          }
-          if (player.getBaseItems() == null) {
-            player.setBaseItems(new ArrayList<Pickup>());
+          if (mResumedFromSnapshot && (mChanges.isDirty() || mSaveInFlight)
+              && isSnapshotCurrent(player)) {
+            // The player has already played on from the snapshot, so keep that state and make sure
+            // all of it reaches the server with the next save
+            Log.i("GameActivity", "Keeping the local state of player: " + mHandle);
+            mChanges.mark(PlayerChanges.ALL);
+          } else {
+            if (mResumedFromSnapshot) {
+              // The snapshot is of another game or older than the server's player, or nothing has
+              // been played on it; drop it along with any changes made on top of it
+              Log.i("GameActivity", "Replacing the snapshot with the server's player: " + mHandle);
+              mChanges.drain();
+              mSavedVersion = GameBackend.NO_VERSION;
+            }
+            setPlayer(player, mIndex, mCopy);
+            // In the same lane as the saves, so that it cannot overwrite a later save's snapshot
+            EndpointScheduler.execute(null, Priority.CRITICAL, new WriteSnapshot(), mCopy);
+            onGameResume();
           }
-          mPlayer = player;
-          mGameId = player.getGameId();
-          onGameResume();
         } else {
           Log.i("GameActivity", "No player found.");
+          mSnapshots.delete(mHandle);
           OkDialogFragment dialog = new OkDialogFragment();
           dialog.setArguments(R.string.cannot_haz_dialog, "This game no longer exists.");
           dialog.show(getFragmentManager(), "OkDialogListener");
         }
+      } else if (mResumedFromSnapshot) {
+        // Carry on from the snapshot; the next save will reach the server once it is reachable
+        Log.i("GameActivity", "Unable to reach the server, continuing from the snapshot.");
       } else {
         Log.i("GameActivity", "Something went wrong.");
         OkDialogFragment dialog = new OkDialogFragment();
@@ -877,8 +964,23 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     }
   }
 
-  private class SavePlayer extends AsyncTask<Player, Void, Void> {
+  private class SavePlayer extends AsyncTask<Player, Void, Long> {
     private boolean mException = false;
+    private final PlayerChanges mSavedChanges;
+    private final PlayerDelta mDelta;
+    private final boolean mNotify;
+
+    /**
+     * @param savedChanges the changes being saved, restored if the save fails
+     * @param delta the changes to apply to the save copy of the player, and to send in its place
+     *        if the backend has acknowledged the version they are based on
+     * @param notify whether to show the outcome of the save to the user
+     */
+    public SavePlayer(PlayerChanges savedChanges, PlayerDelta delta, boolean notify) {
+      mSavedChanges = savedChanges;
+      mDelta = delta;
+      mNotify = notify;
+    }
 
     @Override
     protected void onPreExecute() {
@@ -886,25 +988,50 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
     }
 
     @Override
-    protected Void doInBackground(Player... players) {
+    protected Long doInBackground(Player... players) {
+      long version = GameBackend.NO_VERSION;
+      // Only this lane touches the save copy, so it can be brought up to date here
+      mDelta.applyTo(players[0]);
+      mSnapshots.write(players[0]);
       try {
-        mService.players().update(players[0]).execute();
+        if (mDelta.getBaseVersion() != GameBackend.NO_VERSION) {
+          version = mBackend.patchPlayer(mDelta);
+        }
+        if (version == GameBackend.NO_VERSION) {
+          // No acknowledged version to patch, or the delta was refused, so send the full player
+          version = mBackend.updatePlayer(players[0]);
+        }
       } catch (IOException e) {
         Log.d("GameActivity", "SavePlayer error: " + e.getMessage(), e);
         mException = true;
       }
 
-      return null;
+      return version;
     }
 
     @Override
-    protected void onPostExecute(Void player) {
-      mActionsFragment.endGameSave();
+    protected void onPostExecute(Long version) {
+      mSaveInFlight = false;
       if (!mException) {
-        Toast.makeText(GameActivity.this, R.string.toast_saved_game, Toast.LENGTH_SHORT).show();
-        Log.i("GameActivity", "Saved player: " + player);
-     } else {
-        Toast.makeText(GameActivity.this, R.string.toast_not_saved_game, Toast.LENGTH_SHORT).show();
+        Log.i("GameActivity", "Saved player: " + mPlayer.getHandle() + " at version " + version);
+        mSavedVersion = version;
+      } else {
+        // Keep the unsaved changes so that the next save sends them again
+        mChanges.merge(mSavedChanges);
+      }
+
+      boolean notify = mNotify || mSavePendingNotify;
+      boolean resend = mSavePending && !mGameOver && mChanges.isDirty();
+      mSavePending = false;
+      mSavePendingNotify = false;
+      if (resend) {
+        startSave(notify);
+        return;
+      }
+      mActionsFragment.endGameSave();
+      if (notify) {
+        Toast.makeText(GameActivity.this, mException
+            ? R.string.toast_not_saved_game : R.string.toast_saved_game, Toast.LENGTH_SHORT).show();
       }
     }
   }
@@ -972,6 +1099,8 @@ public class GameActivity extends Activity implements OkDialogListener, OnPlayer
             Long.parseLong(scores[4]), scores[1], Long.parseLong(scores[2]),
             scores[0], Long.parseLong(scores[3]))
             .execute();
+        // The user's lifetime statistics now include this game
+        GameUserCache.get().invalidate(scores[0]);
       } catch (IOException e) {
         Log.d("GameActivity", "SaveScoresAndSend error: " + e.getMessage());
         mException = true;
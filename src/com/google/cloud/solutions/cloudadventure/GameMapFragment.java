@@ -18,6 +18,7 @@ package com.google.cloud.solutions.cloudadventure;
 
 import android.app.Fragment;
 import android.os.Bundle;
+import android.text.Editable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -27,6 +28,10 @@ import android.widget.TextView;
 /**
  * This Fragment belongs to GameActivity. It displays the game world. The map is text-only, taking
  * after the classic idea of console-based text games.
+ * <p>
+ * The console text is kept in an editable buffer that new entries are appended to, so each
+ * command only lays out the new text instead of the whole transcript. Once the number of entries
+ * goes over the scrollback limit, the oldest entries are dropped from the top of the console.
  *
  */
 public class GameMapFragment extends Fragment {
@@ -37,9 +42,16 @@ public class GameMapFragment extends Fragment {
   private ScrollView mScroller;
   private TextView mConsole;
 
-  private StringBuilder mConsoleHistory;
+  private Editable mConsoleBuffer;
   private String mCurrentCommand;
 
+  /*
+   * Ring buffer of the lengths of the entries currently in the console, oldest first.
+   */
+  private int[] mEntryLengths;
+  private int mFirstEntry;
+  private int mEntryCount;
+
   private static final String INPUT_CHAR = "> ";
   private static final String DOUBLE_NEWLINE = "\n\n";
 
@@ -50,20 +62,32 @@ public class GameMapFragment extends Fragment {
     mScroller = (ScrollView) v.findViewById(R.id.scroller);
     mConsole = (TextView) v.findViewById(R.id.game_terminal);
 
-    mConsoleHistory = new StringBuilder(getString(R.string.start_action));
-    mConsoleHistory.append(DOUBLE_NEWLINE);
-    mConsoleHistory.append(INPUT_CHAR);
-    updateConsoleHistory();
+    // At least one entry, so that the ring buffer always has a slot
+    mEntryLengths =
+        new int[Math.max(1, getResources().getInteger(R.integer.console_scrollback_entries))];
+    mFirstEntry = 0;
+    mEntryCount = 0;
+    mConsole.setText("", TextView.BufferType.EDITABLE);
+    mConsoleBuffer = mConsole.getEditableText();
+    appendEntry(getString(R.string.start_action) + DOUBLE_NEWLINE + INPUT_CHAR);
 
     return v;
   }
 
   /**
-   * Updates the text history of the console TextView to the current {@code mConsoleHistory} and
-   * sets the ScrollView.
+   * Appends a new entry to the end of the console, drops the oldest entry if the scrollback limit
+   * has been reached, and scrolls the ScrollView to the bottom.
    */
-  private void updateConsoleHistory() {
-    mConsole.setText(mConsoleHistory.toString());
+  private void appendEntry(CharSequence entry) {
+    if (mEntryCount == mEntryLengths.length) {
+      mConsoleBuffer.delete(0, mEntryLengths[mFirstEntry]);
+      mFirstEntry = (mFirstEntry + 1) % mEntryLengths.length;
+      mEntryCount--;
+    }
+    mEntryLengths[(mFirstEntry + mEntryCount) % mEntryLengths.length] = entry.length();
+    mEntryCount++;
+    mConsoleBuffer.append(entry);
+
     mScroller.post(new Runnable() {
       @Override
       public void run() {
@@ -88,12 +112,13 @@ public class GameMapFragment extends Fragment {
    * Resets the current command to emtpy string after view update.
    */
   public void enterCurrentCommandWithResult(String commandResult) {
-    mConsoleHistory.append(mCurrentCommand);
-    mConsoleHistory.append(DOUBLE_NEWLINE);
-    mConsoleHistory.append(commandResult);
-    mConsoleHistory.append(DOUBLE_NEWLINE);
-    mConsoleHistory.append(INPUT_CHAR);
-    updateConsoleHistory();
+    StringBuilder entry = new StringBuilder(mCurrentCommand.length() + commandResult.length() + 6);
+    entry.append(mCurrentCommand);
+    entry.append(DOUBLE_NEWLINE);
+    entry.append(commandResult);
+    entry.append(DOUBLE_NEWLINE);
+    entry.append(INPUT_CHAR);
+    appendEntry(entry);
     mCurrentCommand = "";
   }
 
@@ -103,7 +128,6 @@ public class GameMapFragment extends Fragment {
    * Directly appends to the console history.
    */
   public void appendToConsoleHistory(String newString) {
-    mConsoleHistory.append(newString);
-    updateConsoleHistory();
+    appendEntry(newString);
   }
 }
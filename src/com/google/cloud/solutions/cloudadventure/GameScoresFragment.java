@@ -16,11 +16,12 @@
 
 package com.google.cloud.solutions.cloudadventure;
 
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.cloudadventure.Cloudadventure;
 import com.google.api.services.cloudadventure.model.Player;
-import com.google.cloud.solutions.cloudadventure.util.CloudEndpointUtils;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler.Priority;
+import com.google.cloud.solutions.cloudadventure.util.EndpointService;
+import com.google.cloud.solutions.cloudadventure.widget.PlayerScoresAdapter;
 
 import android.app.Activity;
 import android.app.Fragment;
@@ -33,15 +34,12 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
-import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 import android.widget.Button;
-import android.widget.TableLayout;
-import android.widget.TableRow;
-import android.widget.TextView;
+import android.widget.ListView;
 
 import java.io.IOException;
 import java.util.List;
@@ -63,14 +61,10 @@ public class GameScoresFragment extends Fragment {
    * View components.
    */
   private Button mHomeButton;
-  private TableLayout mScoresTable;
+  private ListView mScoresList;
+  private PlayerScoresAdapter mScoresAdapter;
   private ProgressDialog mProgressDialog;
 
-  private static final String PLAYER_TAG_SUFFIX = "-player";
-  private static final String GEMS_TAG_SUFFIX = "-gems";
-  private static final String MOBS_TAG_SUFFIX = "-mobs_killed";
-  private static final String DEATHS_TAG_SUFFIX = "-deaths";
-
   /*
    * Callback to GameActivity.
    */
@@ -115,7 +109,9 @@ public class GameScoresFragment extends Fragment {
     final View v = inflater.inflate(R.layout.fragment_game_scores, container, false);
     mProgressDialog = new ProgressDialog(getActivity());
     mProgressDialog.setCanceledOnTouchOutside(false);
-    mScoresTable = (TableLayout) v.findViewById(R.id.player_end_scores_table);
+    mScoresAdapter = new PlayerScoresAdapter(getActivity());
+    mScoresList = (ListView) v.findViewById(R.id.player_end_scores_list);
+    mScoresList.setAdapter(mScoresAdapter);
     mHomeButton = (Button) v.findViewById(R.id.return_home_button);
     mHomeButton.setOnClickListener(new OnClickListener() {
       @Override
@@ -128,11 +124,8 @@ public class GameScoresFragment extends Fragment {
     LocalBroadcastManager.getInstance(getActivity()).registerReceiver(mStatsMsgReceiver,
         new IntentFilter(GCMIntentService.BROADCAST_ON_MESSAGE_PLAYER_END_STATS));
 
-    // Build the endpoint service
-    Cloudadventure.Builder builder =
-        new Cloudadventure.Builder(AndroidHttp.newCompatibleTransport(), new GsonFactory(), null);
-    CloudEndpointUtils.updateBuilder(builder);
-    mService = builder.build();
+    // Get the shared endpoint service
+    mService = EndpointService.get();
 
     mProgressDialog.show();
 
@@ -141,7 +134,9 @@ public class GameScoresFragment extends Fragment {
 
   @Override
   public void onPause() {
-    new RemovePlayerAndCleanUp().execute(mCurrentHandle);
+    // In the same lane as the saving of the scores, so that the player is only removed after it
+    EndpointScheduler.execute(
+        null, Priority.CRITICAL, new RemovePlayerAndCleanUp(), mCurrentHandle);
     super.onPause();
   }
 
@@ -175,7 +170,7 @@ public class GameScoresFragment extends Fragment {
    */
   public void reportRetrievalIssue() {
     getView().findViewById(R.id.scores_retrieval_issue).setVisibility(View.VISIBLE);
-    getView().findViewById(R.id.player_end_scores_table).setVisibility(View.INVISIBLE);
+    mScoresList.setVisibility(View.INVISIBLE);
   }
 
   /**
@@ -187,11 +182,15 @@ public class GameScoresFragment extends Fragment {
    * Adds the scores of a list of players.
    */
   public void addPlayersScores(List<Player> players) {
+    boolean added = false;
     for (Player player : players) {
-      if (getView().findViewWithTag(player.getHandle()) == null) {
-        updateScoresTable(player);
+      if (!mScoresAdapter.contains(player.getHandle())) {
+        added |= mScoresAdapter.put(player);
       }
     }
+    if (added) {
+      mScoresAdapter.notifyDataSetChanged();
+    }
   }
 
   /**
@@ -199,49 +198,25 @@ public class GameScoresFragment extends Fragment {
    * The ping is always the most updated information, so always update.
    */
   private void addPlayerScore(Player player) {
-    String handle = player.getHandle();
-    if (getView().findViewWithTag(handle) == null) {
-      updateScoresTable(player);
+    if (mScoresAdapter.put(player)) {
+      mScoresAdapter.notifyDataSetChanged();
     } else {
-      TextView text = (TextView) getView().findViewWithTag(handle + GEMS_TAG_SUFFIX);
-      text.setText(Long.toString(player.getGemsCollected()));
-      text = (TextView) getView().findViewWithTag(handle + MOBS_TAG_SUFFIX);
-      text.setText(Long.toString(player.getMobsKilled()));
-      text = (TextView) getView().findViewWithTag(handle + DEATHS_TAG_SUFFIX);
-      text.setText(Long.toString(player.getNumDeaths()));
+      updateScoresRow(mScoresAdapter.getPosition(player.getHandle()), player);
     }
   }
 
   /**
-   * Updates the View for showing the player scores.
+   * Updates the View of a single existing row of the scores list. Rows that are not currently
+   * on screen are bound with the new scores the next time they are shown.
    *
+   * @param position the row position of the player
    * @param player the player whose scores have been updated
    */
-  private void updateScoresTable(Player player) {
-    String handle = player.getHandle();
-    TableRow row = new TableRow(getActivity());
-    row.setTag(handle);
-    TextView text = new TextView(getActivity());
-    text.setTag(handle + PLAYER_TAG_SUFFIX);
-    text.setGravity(Gravity.CENTER);
-    text.setText(handle);
-    row.addView(text);
-    text = new TextView(getActivity());
-    text.setTag(handle + GEMS_TAG_SUFFIX);
-    text.setGravity(Gravity.CENTER);
-    text.setText(Long.toString(player.getGemsCollected()));
-    row.addView(text);
-    text = new TextView(getActivity());
-    text.setTag(handle + MOBS_TAG_SUFFIX);
-    text.setGravity(Gravity.CENTER);
-    text.setText(Long.toString(player.getMobsKilled()));
-    row.addView(text);
-    text = new TextView(getActivity());
-    text.setTag(handle + DEATHS_TAG_SUFFIX);
-    text.setGravity(Gravity.CENTER);
-    text.setText(Long.toString(player.getNumDeaths()));
-    row.addView(text);
-    mScoresTable.addView(row);
+  private void updateScoresRow(int position, Player player) {
+    int childIndex = position - mScoresList.getFirstVisiblePosition();
+    if (childIndex >= 0 && childIndex < mScoresList.getChildCount()) {
+      mScoresAdapter.bindView(mScoresList.getChildAt(childIndex), player);
+    }
   }
 
   /**
@@ -23,6 +23,7 @@ import android.app.ProgressDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
@@ -54,6 +55,17 @@ public class MainActivity extends Activity {
     mProgressDialog = new ProgressDialog(this);
     mProgressDialog.setCanceledOnTouchOutside(false);
     mUserHandleView = (TextView) findViewById(R.id.user_handle_welcome_text);
+
+    // Endpoint call statistics are a hidden debug screen
+    if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+      findViewById(R.id.main_welcome_text).setOnLongClickListener(new View.OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View view) {
+          startActivity(new Intent(MainActivity.this, EndpointStatsActivity.class));
+          return true;
+        }
+      });
+    }
   }
 
   @Override
@@ -17,6 +17,7 @@
 package com.google.cloud.solutions.cloudadventure;
 
 import com.google.api.services.cloudadventure.model.Tile;
+import com.google.cloud.solutions.cloudadventure.world.MapUtils;
 import com.google.cloud.solutions.cloudadventure.world.MapUtils.Cardinal;
 import com.google.cloud.solutions.cloudadventure.world.MapUtils.DirectionMapper;
 
@@ -29,8 +30,6 @@ import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 import android.widget.Button;
 
-import java.util.List;
-
 /**
  * This Fragment belongs to GameActivity. It contains a user-interactive part of this screen,
  * allowing users to choose navigational directions.
@@ -103,20 +102,21 @@ public class PlayerNavFragment extends Fragment {
   /**
    * Used by GameActivity to update the state of this Fragment.
    * <p>
-   * Sets the current {@link Tile} and decides the navigation buttons to show based upon the
-   * properties of the tile.
+   * Sets the openings of the current {@link Tile} and decides the navigation buttons to show based
+   * upon them.
    * <p>
    * This should be called each time the {@link Tile} that the {@link Player} is standing on is
    * updated, in order to ensure that the information and views are properly updated.
    *
-   * @param tile the new current tile
+   * @param openings the cardinal openings bitmask of the new current tile, as returned by
+   *        {@link MapUtils#getOpenings(Tile)}
    */
-  public void setCurrentTile(Tile tile) {
-    List<String> openTo = tile.getOpenTo();
-    mForwardButton.setEnabled(openTo.contains(mDirectionMapper.getFrontCardinal().toString()));
-    mRightButton.setEnabled(openTo.contains(mDirectionMapper.getRightCardinal().toString()));
-    mBackButton.setEnabled(openTo.contains(mDirectionMapper.getBehindCardinal().toString()));
-    mLeftButton.setEnabled(openTo.contains(mDirectionMapper.getLeftCardinal().toString()));
+  public void setCurrentTileOpenings(int openings) {
+    int relativeOpenings = mDirectionMapper.getRelativeOpenings(openings);
+    mForwardButton.setEnabled((relativeOpenings & DirectionMapper.FRONT) != 0);
+    mRightButton.setEnabled((relativeOpenings & DirectionMapper.RIGHT) != 0);
+    mBackButton.setEnabled((relativeOpenings & DirectionMapper.BEHIND) != 0);
+    mLeftButton.setEnabled((relativeOpenings & DirectionMapper.LEFT) != 0);
   }
 
   /**
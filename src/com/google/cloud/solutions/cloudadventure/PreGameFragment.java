@@ -39,6 +39,9 @@ import android.widget.ListView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * This Activity takes places before the game actually starts. Players who join the game can see who
@@ -48,13 +51,14 @@ import java.util.ArrayList;
  */
 public class PreGameFragment extends Fragment {
 
-  private ArrayList<String> mCurrentHandles;
+  private final Set<String> mCurrentHandles = new HashSet<String>();
   private boolean mIsCreator;
 
   /*
    * View components.
    */
   private ListView mPlayersView;
+  private ArrayAdapter<String> mPlayersAdapter;
   private TextView mStatusMessage;
   private Button mStartButton;
   private Button mCancelButton;
@@ -127,6 +131,9 @@ public class PreGameFragment extends Fragment {
     // Set component views
     final View v = inflater.inflate(R.layout.fragment_pre_game, container, false);
     mPlayersView = (ListView) v.findViewById(R.id.game_players_list);
+    mPlayersAdapter = new ArrayAdapter<String>(getActivity(),
+        android.R.layout.simple_list_item_1, new ArrayList<String>());
+    mPlayersView.setAdapter(mPlayersAdapter);
     mStatusMessage = (TextView) v.findViewById(R.id.game_waiting_text);
 
     instantiateStartButton(v, R.id.start_game_button);
@@ -166,14 +173,18 @@ public class PreGameFragment extends Fragment {
 
   /**
    * Used by GameActivity to update the state of this Fragment.
+   * <p>
+   * Adds the players who are not listed yet to the end of the list, in the given order.
    */
-  public void addCurrentPlayers(ArrayList<String> handles) {
-    if (mCurrentHandles == null) {
-      mCurrentHandles = new ArrayList<String>();
+  public void addCurrentPlayers(List<String> handles) {
+    mPlayersAdapter.setNotifyOnChange(false);
+    for (String handle : handles) {
+      if (mCurrentHandles.add(handle)) {
+        mPlayersAdapter.add(handle);
+      }
     }
-    mCurrentHandles.removeAll(handles);
-    mCurrentHandles.addAll(handles);
-    updatePlayersListView();
+    mPlayersAdapter.notifyDataSetChanged();
+    updateControlsVisibility();
   }
 
   private void showGameDestroyDialog(String message) {
@@ -190,24 +201,20 @@ public class PreGameFragment extends Fragment {
   }
 
   private void addCurrentPlayer(String handle) {
-    if (mCurrentHandles == null) {
-      mCurrentHandles = new ArrayList<String>();
+    if (mCurrentHandles.add(handle)) {
+      mPlayersAdapter.add(handle);
     }
-    mCurrentHandles.remove(handle);
-    mCurrentHandles.add(handle);
-    updatePlayersListView();
+    updateControlsVisibility();
   }
 
   private void removeCurrentPlayer(String handle) {
-    if (mCurrentHandles != null) {
-      mCurrentHandles.remove(handle);
+    if (mCurrentHandles.remove(handle)) {
+      mPlayersAdapter.remove(handle);
     }
-    updatePlayersListView();
+    updateControlsVisibility();
   }
 
-  private void updatePlayersListView() {
-    mPlayersView.setAdapter(new ArrayAdapter<String>(getActivity(),
-        android.R.layout.simple_list_item_1, mCurrentHandles));
+  private void updateControlsVisibility() {
     if (mIsCreator) {
       mStartButton.setVisibility(View.VISIBLE);
       mCancelButton.setVisibility(View.VISIBLE);
@@ -16,12 +16,13 @@
 
 package com.google.cloud.solutions.cloudadventure;
 
-import com.google.api.client.extensions.android.http.AndroidHttp;
-import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.cloudadventure.Cloudadventure;
 import com.google.api.services.cloudadventure.model.FriendMessage;
 import com.google.api.services.cloudadventure.model.GameUser;
-import com.google.cloud.solutions.cloudadventure.util.CloudEndpointUtils;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler;
+import com.google.cloud.solutions.cloudadventure.util.EndpointScheduler.Priority;
+import com.google.cloud.solutions.cloudadventure.util.EndpointService;
+import com.google.cloud.solutions.cloudadventure.util.GameUserCache;
 import com.google.cloud.solutions.cloudadventure.util.Constants;
 import com.google.cloud.solutions.cloudadventure.widget.OkDialogFragment;
 import com.google.cloud.solutions.cloudadventure.widget.OkDialogFragment.OkDialogListener;
@@ -71,11 +72,8 @@ public class ProfileActivity extends Activity implements OkDialogListener {
     Log.d("ProfileActivity State", "onCreate");
     super.onCreate(savedInstanceState);
 
-    // Build the endpoint service
-    Cloudadventure.Builder builder =
-        new Cloudadventure.Builder(AndroidHttp.newCompatibleTransport(), new GsonFactory(), null);
-    CloudEndpointUtils.updateBuilder(builder);
-    mService = builder.build();
+    // Get the shared endpoint service
+    mService = EndpointService.get();
 
     // Set the components for this Activity
     this.requestWindowFeature(Window.FEATURE_NO_TITLE);
@@ -99,17 +97,24 @@ public class ProfileActivity extends Activity implements OkDialogListener {
       buildFriendInviteNotificationDialog(getIntent()).show();
     }
 
-    new SetUserFromHandle().execute(mCurrentUserHandle);
+    EndpointScheduler.execute(this, Priority.NORMAL, new SetUserFromHandle(), mCurrentUserHandle);
     Log.d("ProfileActivity State", "onCreate done");
   }
 
+  @Override
+  protected void onDestroy() {
+    Log.d("ProfileActivity State", "onDestroy");
+    EndpointScheduler.cancelAll(this);
+    super.onDestroy();
+  }
+
   private AlertDialog buildFriendInviteNotificationDialog(final Intent intent) {
     AlertDialog.Builder builder = new AlertDialog.Builder(this);
     builder.setMessage(intent.getStringExtra(GCMIntentService.GCM_PAYLOAD_MESSAGE))
         .setTitle(R.string.friend_notification_dialog_title)
         .setPositiveButton(R.string.dialog_accept_button, new DialogInterface.OnClickListener() {
           public void onClick(DialogInterface dialog, int id) {
-            new AcceptFriendRequest().execute(
+            EndpointScheduler.execute(null, Priority.NORMAL, new AcceptFriendRequest(),
                 new FriendMessage()
                     // friend accepter
                     .setFrom(intent.getStringExtra(GCMIntentService.GCM_PAYLOAD_TO_USER_HANDLE))
@@ -151,6 +156,14 @@ public class ProfileActivity extends Activity implements OkDialogListener {
         this, android.R.layout.simple_list_item_1, mCurrentUser.getFriends()));
   }
 
+  private void setCurrentUser(GameUser user) {
+    if (user.getFriends() == null) {
+      user.setFriends(new ArrayList<String>());
+    }
+    mCurrentUser = user;
+    onCurrentUserRefresh();
+  }
+
   @Override
   public void onAck(DialogFragment dialog) {}
 
@@ -170,11 +183,16 @@ public class ProfileActivity extends Activity implements OkDialogListener {
       FriendMessage invite = new FriendMessage();
       invite.setFrom(mCurrentUserHandle);
       invite.setTo(friend);
-      new SendInvites().execute(invite);
+      EndpointScheduler.execute(null, Priority.BACKGROUND, new SendInvites(), invite);
     }
     friendView.setText("");
   }
 
+  private static void invalidateUsers(FriendMessage message) {
+    GameUserCache.get().invalidate(message.getFrom());
+    GameUserCache.get().invalidate(message.getTo());
+  }
+
   /*
    * AsyncTasks.
    */
@@ -192,6 +210,7 @@ public class ProfileActivity extends Activity implements OkDialogListener {
       FriendMessage affirmInvite = null;
       try {
         affirmInvite = mService.users().inviteFriend(friendInvites[0]).execute();
+        invalidateUsers(friendInvites[0]);
       } catch (IOException e) {
         Log.e("ProfileActivity", "SendInvitesTask error: " + e.getMessage());
         mException = true;
@@ -220,7 +239,10 @@ public class ProfileActivity extends Activity implements OkDialogListener {
     }
   }
 
-  private class SetUserFromHandle extends AsyncTask<String, Void, GameUser> {
+  /**
+   * Shows the cached user, if there is one, while the current one is fetched.
+   */
+  private class SetUserFromHandle extends AsyncTask<String, GameUser, GameUser> {
     private boolean mException = false;
 
     @Override
@@ -230,9 +252,14 @@ public class ProfileActivity extends Activity implements OkDialogListener {
 
     @Override
     protected GameUser doInBackground(String... userHandles) {
+      GameUserCache cache = GameUserCache.get();
+      GameUser cached = cache.peek(userHandles[0]);
+      if (cached != null) {
+        publishProgress(cached);
+      }
       GameUser user = null;
       try {
-        user = mService.users().getByHandle(userHandles[0]).execute();
+        user = cache.getByHandle(userHandles[0]);
       } catch (IOException e) {
         Log.e("ProfileActivity", "SetUserFromHandle error: " + e.getMessage(), e);
         mException = true;
@@ -240,17 +267,21 @@ public class ProfileActivity extends Activity implements OkDialogListener {
       return user;
     }
 
+    @Override
+    protected void onProgressUpdate(GameUser... cached) {
+      mProgressDialog.dismiss();
+      setCurrentUser(cached[0]);
+    }
+
     @Override
     protected void onPostExecute(GameUser user) {
       mProgressDialog.dismiss();
       if (!mException  // no exception was thrown
           && user != null
           && !user.containsKey("error_message")) {  // endpoint return value was not null
-        if (user.getFriends() == null) {
-          user.setFriends(new ArrayList<String>());
-        }
-        mCurrentUser = user;
-        onCurrentUserRefresh();
+        setCurrentUser(user);
+      } else if (mCurrentUser != null) {
+        Log.w("ProfileActivity", "Showing the cached user " + mCurrentUserHandle);
       } else {
         OkDialogFragment dialog = new OkDialogFragment();
         dialog.setArguments(R.string.cannot_haz_dialog,
@@ -272,6 +303,7 @@ public class ProfileActivity extends Activity implements OkDialogListener {
     protected Void doInBackground(FriendMessage... messageBus) {
       try {
         mService.users().acceptFriend(messageBus[0]).execute();
+        invalidateUsers(messageBus[0]);
       } catch (IOException e) {
         Log.e("ProfileActivity", "AcceptFriendRequest error: " + e.getMessage(), e);
         mException = true;
@@ -283,7 +315,8 @@ public class ProfileActivity extends Activity implements OkDialogListener {
     protected void onPostExecute(Void none) {
       mProgressDialog.dismiss();
       if (!mException) {
-        new SetUserFromHandle().execute(mCurrentUserHandle);
+        EndpointScheduler.execute(
+            ProfileActivity.this, Priority.NORMAL, new SetUserFromHandle(), mCurrentUserHandle);
       }
     }
   }
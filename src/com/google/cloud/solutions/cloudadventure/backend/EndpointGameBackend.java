@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.services.cloudadventure.Cloudadventure;
+import com.google.api.services.cloudadventure.model.Player;
+
+import java.io.IOException;
+
+/**
+ * A {@link GameBackend} that calls the Cloud Endpoints service.
+ * <p>
+ * The service has no patch call and does not version players yet, so every delta is refused and
+ * callers fall back to {@link #updatePlayer(Player)}.
+ */
+public class EndpointGameBackend implements GameBackend {
+
+  private final Cloudadventure service;
+
+  public EndpointGameBackend(Cloudadventure service) {
+    this.service = service;
+  }
+
+  @Override
+  public long updatePlayer(Player player) throws IOException {
+    service.players().update(player).execute();
+    return NO_VERSION;
+  }
+
+  @Override
+  public long patchPlayer(PlayerDelta delta) {
+    return NO_VERSION;
+  }
+}
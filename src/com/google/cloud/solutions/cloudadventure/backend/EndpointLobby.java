@@ -0,0 +1,172 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.json.CustomizeJsonParser;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.util.Key;
+import com.google.api.services.cloudadventure.Cloudadventure;
+import com.google.cloud.solutions.cloudadventure.util.EndpointLog;
+import com.google.cloud.solutions.cloudadventure.util.EndpointStats;
+import com.google.cloud.solutions.cloudadventure.util.PlayerStreamReader;
+
+import java.io.IOException;
+
+/**
+ * Enters a game's lobby through the Cloud Endpoints service in a single round trip where the
+ * service supports it.
+ * <p>
+ * A player joins with the {@code joinGameAndListPlayers} call, which adds the player to the game,
+ * notifies the other players, and returns a {@link LobbyEntry}. Its player, maze included, is read
+ * with {@link PlayerStreamReader} as it streams in. A service that does not have the
+ * call yet answers 404, after which, for the lifetime of the process, the player joins with
+ * {@code players.joinGame} followed by {@code players.notifyJoin} as before, both on the calling
+ * thread.
+ */
+public class EndpointLobby {
+
+  private static final String TAG = "EndpointLobby";
+
+  /**
+   * The path of the combined call, relative to the service path of the client.
+   */
+  public static final String JOIN_AND_LIST_PATH = "joinGameAndListPlayers/{gameId}/{handle}";
+
+  private static volatile boolean combinedUnsupported;
+
+  private final Cloudadventure service;
+
+  public EndpointLobby(Cloudadventure service) {
+    this.service = service;
+  }
+
+  /**
+   * Adds the player to the game and lists the players who have joined so far.
+   *
+   * @param gameId the ID of the game to join
+   * @param handle the handle of the joining user
+   * @return {@link LobbyEntry}, never {@code null}, whose player is {@code null} or carries an
+   *         {@code error_message} if the game could not be joined, and whose players are
+   *         {@code null} if the game could not be joined or they could not be listed
+   * @throws IOException if the player could not be added to the game
+   */
+  public LobbyEntry joinGame(String gameId, String handle) throws IOException {
+    if (!combinedUnsupported) {
+      try {
+        return readLobbyEntry(new JoinGameAndListPlayers(gameId, handle).executeUnparsed());
+      } catch (HttpResponseException e) {
+        if (e.getStatusCode() != HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+          throw e;
+        }
+        EndpointLog.i(TAG, "The service has no combined join call, joining in two calls");
+        combinedUnsupported = true;
+      }
+    }
+
+    LobbyEntry entry = new LobbyEntry().setPlayer(PlayerStreamReader.read(
+        service.getJsonFactory(), service.players().joinGame(gameId, handle).executeUnparsed(),
+        null));
+    if (entry.getPlayer() == null || entry.getPlayer().containsKey("error_message")) {
+      return entry;
+    }
+    try {
+      entry.setPlayers(service.players().notifyJoin(gameId, handle).execute());
+    } catch (IOException e) {
+      // The player has joined either way; the lobby fills in as other players join
+      EndpointLog.d(TAG, "NotifyJoin error: " + e.getMessage());
+    }
+    return entry;
+  }
+
+  /**
+   * Reads the response of the combined call, handing its player to {@link PlayerStreamReader} and
+   * everything else to the JSON factory, and disconnects the response. An empty or {@code null}
+   * response is read as an entry without a player.
+   */
+  private LobbyEntry readLobbyEntry(HttpResponse response) throws IOException {
+    try {
+      JsonParser parser =
+          service.getJsonFactory().createJsonParser(EndpointStats.getContent(response));
+      try {
+        LobbyEntry entry = new LobbyEntry();
+        JsonToken token = parser.nextToken();
+        if (token == null || token == JsonToken.VALUE_NULL) {
+          // The service returned no entry, as it does when the game no longer exists
+          return entry;
+        }
+        StopAtPlayer stop = new StopAtPlayer(entry);
+        parser.parse(entry, stop);
+        while (stop.stopped) {
+          stop.stopped = false;
+          entry.setPlayer(PlayerStreamReader.read(parser, null));
+          // Move past the player and carry on with the rest of the entry
+          parser.nextToken();
+          parser.parse(entry, stop);
+        }
+        return entry;
+      } finally {
+        parser.close();
+      }
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  /**
+   * Stops the JSON factory at the player of the entry, leaving the parser on its value.
+   */
+  private static class StopAtPlayer extends CustomizeJsonParser {
+    private final LobbyEntry entry;
+    boolean stopped;
+
+    StopAtPlayer(LobbyEntry entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    public boolean stopAt(Object context, String key) {
+      if (context == entry && "player".equals(key)) {
+        stopped = true;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * The combined call, which the generated client does not know about.
+   */
+  private class JoinGameAndListPlayers extends AbstractGoogleJsonClientRequest<LobbyEntry> {
+
+    @Key
+    private String gameId;
+
+    @Key
+    private String handle;
+
+    JoinGameAndListPlayers(String gameId, String handle) {
+      super(service, "POST", JOIN_AND_LIST_PATH, null, LobbyEntry.class);
+      this.gameId = gameId;
+      this.handle = handle;
+    }
+  }
+}
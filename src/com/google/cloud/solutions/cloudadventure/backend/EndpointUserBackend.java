@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.services.cloudadventure.Cloudadventure;
+import com.google.api.services.cloudadventure.model.GameUser;
+import com.google.api.services.cloudadventure.model.Handle;
+import com.google.cloud.solutions.cloudadventure.util.SingleFlight;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * A {@link UserBackend} that calls the Cloud Endpoints service, logging how long each call takes.
+ * <p>
+ * The service has no combined sign-in call, so {@link #signIn} looks the user up and creates it
+ * straight away, on the same thread, when there is none.
+ */
+public class EndpointUserBackend implements UserBackend {
+
+  private static final String TAG = "EndpointUserBackend";
+
+  private final Cloudadventure service;
+
+  public EndpointUserBackend(Cloudadventure service) {
+    this.service = service;
+  }
+
+  @Override
+  public GameUser signIn(String account) throws IOException {
+    long startedAt = SystemClock.elapsedRealtime();
+    GameUser user = SingleFlight.execute(service.users().get(account));
+    logStep("users.get", startedAt);
+    if (isValid(user)) {
+      return user;
+    }
+    Log.i(TAG, "No existing user with account: " + account);
+    startedAt = SystemClock.elapsedRealtime();
+    user = service.users().create(account).execute();
+    logStep("users.create", startedAt);
+    if (!isValid(user)) {
+      throw new IOException("Unable to create a user for " + account);
+    }
+    return user;
+  }
+
+  @Override
+  public Handle claimHandle(String handle) throws IOException {
+    long startedAt = SystemClock.elapsedRealtime();
+    Handle claimed = service.handles().claim(handle).execute();
+    logStep("handles.claim", startedAt);
+    if (!isValid(claimed)) {
+      throw new IOException("Unable to claim " + handle);
+    }
+    return claimed;
+  }
+
+  @Override
+  public void updateUser(GameUser user) throws IOException {
+    long startedAt = SystemClock.elapsedRealtime();
+    service.users().update(user).execute();
+    logStep("users.update", startedAt);
+  }
+
+  private static boolean isValid(GenericJson result) {
+    return result != null && !result.containsKey("error_message");
+  }
+
+  private static void logStep(String step, long startedAt) {
+    Log.i(TAG, step + " took " + (SystemClock.elapsedRealtime() - startedAt) + " ms");
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.services.cloudadventure.model.Player;
+
+import java.io.IOException;
+
+/**
+ * The calls the game makes to save its state, behind an interface so that the endpoint service
+ * can be swapped for a local stand-in.
+ * <p>
+ * Saves are versioned: every accepted save returns the new version of the player, and a
+ * {@link PlayerDelta} is only applied on top of the version it was computed against.
+ */
+public interface GameBackend {
+
+  /**
+   * Returned in place of a version when the backend does not track versions, or when a delta could
+   * not be applied and the full player must be sent instead.
+   */
+  long NO_VERSION = -1;
+
+  /**
+   * Replaces the saved player with the given one.
+   *
+   * @param player the full player to save
+   * @return the new version of the player, or {@link #NO_VERSION}
+   * @throws IOException if the call fails
+   */
+  long updatePlayer(Player player) throws IOException;
+
+  /**
+   * Applies the given changes to the saved player.
+   *
+   * @param delta the changes since {@link PlayerDelta#getBaseVersion()}
+   * @return the new version of the player, or {@link #NO_VERSION} if the saved player is not at
+   *         the base version of the delta, or if this backend cannot apply deltas at all
+   * @throws IOException if the call fails
+   */
+  long patchPlayer(PlayerDelta delta) throws IOException;
+}
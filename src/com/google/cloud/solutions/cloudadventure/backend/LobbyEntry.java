@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.util.Key;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.PlayerCollection;
+
+/**
+ * What a player gets back on entering a game's lobby: their new {@link Player}, and the players
+ * who have joined the game so far.
+ */
+public final class LobbyEntry extends GenericJson {
+
+  @Key
+  private Player player;
+
+  @Key
+  private PlayerCollection players;
+
+  /**
+   * Returns the player that was added to the game, which carries an {@code error_message} if the
+   * game could not be joined.
+   */
+  public Player getPlayer() {
+    return player;
+  }
+
+  public LobbyEntry setPlayer(Player player) {
+    this.player = player;
+    return this;
+  }
+
+  /**
+   * Returns the players who have joined the game so far, or {@code null} if they are not known.
+   */
+  public PlayerCollection getPlayers() {
+    return players;
+  }
+
+  public LobbyEntry setPlayers(PlayerCollection players) {
+    this.players = players;
+    return this;
+  }
+
+  @Override
+  public LobbyEntry set(String fieldName, Object value) {
+    return (LobbyEntry) super.set(fieldName, value);
+  }
+
+  @Override
+  public LobbyEntry clone() {
+    return (LobbyEntry) super.clone();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.services.cloudadventure.model.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An in-memory {@link GameBackend} that keeps a versioned copy of every saved player and applies
+ * deltas to it, as the server would. It is used to run the client without a server, by setting
+ * {@code CloudEndpointUtils.LOCAL_BACKEND_RUN}.
+ */
+public class LocalGameBackend implements GameBackend {
+
+  private static final LocalGameBackend instance = new LocalGameBackend();
+
+  private final Map<String, Player> players = new HashMap<String, Player>();
+  private final Map<String, Long> versions = new HashMap<String, Long>();
+
+  public static LocalGameBackend get() {
+    return instance;
+  }
+
+  /**
+   * Returns a copy of the saved player with the given handle, or {@code null} if there is none.
+   */
+  public synchronized Player getPlayer(String handle) {
+    Player player = players.get(handle);
+    return player == null ? null : player.clone();
+  }
+
+  @Override
+  public synchronized long updatePlayer(Player player) {
+    players.put(player.getHandle(), player.clone());
+    return nextVersion(player.getHandle());
+  }
+
+  @Override
+  public synchronized long patchPlayer(PlayerDelta delta) {
+    String handle = delta.getHandle();
+    Player player = players.get(handle);
+    Long version = versions.get(handle);
+    if (player == null || version == null || version != delta.getBaseVersion()) {
+      return NO_VERSION;
+    }
+    delta.applyTo(player);
+    return nextVersion(handle);
+  }
+
+  private long nextVersion(String handle) {
+    Long version = versions.get(handle);
+    long next = version == null ? 1 : version + 1;
+    versions.put(handle, next);
+    return next;
+  }
+}
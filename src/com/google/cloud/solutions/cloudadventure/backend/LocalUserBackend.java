@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.services.cloudadventure.model.GameUser;
+import com.google.api.services.cloudadventure.model.Handle;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory {@link UserBackend} that signs a user in with a single call, as a combined
+ * endpoint would. It is used to run the client without a server, by setting
+ * {@code CloudEndpointUtils.LOCAL_BACKEND_RUN}.
+ */
+public class LocalUserBackend implements UserBackend {
+
+  private static final LocalUserBackend instance = new LocalUserBackend();
+
+  private final Map<String, GameUser> users = new HashMap<String, GameUser>();
+  private final Set<String> handles = new HashSet<String>();
+
+  public static LocalUserBackend get() {
+    return instance;
+  }
+
+  @Override
+  public synchronized GameUser signIn(String account) {
+    GameUser user = users.get(account);
+    if (user == null) {
+      user = new GameUser().setAccount(account);
+      users.put(account, user);
+    }
+    return user.clone();
+  }
+
+  @Override
+  public synchronized Handle claimHandle(String handle) {
+    return new Handle().setHandle(handles.add(handle) ? handle : HANDLE_TAKEN);
+  }
+
+  @Override
+  public synchronized void updateUser(GameUser user) {
+    users.put(user.getAccount(), user.clone());
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.services.cloudadventure.model.Coordinates;
+import com.google.api.services.cloudadventure.model.Pickup;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.Tile;
+import com.google.cloud.solutions.cloudadventure.world.MazeIndex;
+import com.google.cloud.solutions.cloudadventure.world.PlayerChanges;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The changes made to a {@link Player} since a save that the backend has acknowledged, sent in
+ * place of the full player. Only the parts flagged in {@link #getFlags()} are set; the maze is
+ * described by the few tiles whose contents have changed and the gems that have been collected,
+ * rather than by the whole grid.
+ */
+public class PlayerDelta {
+
+  private String handle;
+  private long baseVersion;
+  private int flags;
+
+  private Coordinates currentTile;
+  private String orientation;
+  private Long currentHP;
+  private Long maxHP;
+  private List<Pickup> pickups;
+  private Long gemsCollected;
+  private Long mobsKilled;
+  private Long numDeaths;
+  private List<Tile> changedTiles;
+  private List<Coordinates> removedGems;
+
+  /**
+   * Builds the delta of the player for the given changes.
+   *
+   * @param player the current state of the player
+   * @param maze the {@link MazeIndex} of the player's maze
+   * @param changes the changes since the last acknowledged save
+   * @param baseVersion the version of the player that the backend last acknowledged
+   * @return {@link PlayerDelta}
+   */
+  public static PlayerDelta from(
+      Player player, MazeIndex maze, PlayerChanges changes, long baseVersion) {
+    PlayerDelta delta = new PlayerDelta();
+    delta.handle = player.getHandle();
+    delta.baseVersion = baseVersion;
+    delta.flags = changes.getFlags();
+
+    if (changes.isDirty(PlayerChanges.POSITION)) {
+      delta.currentTile = player.getCurrentTile().getCoord().clone();
+      delta.orientation = player.getOrientation();
+    }
+    if (changes.isDirty(PlayerChanges.HIT_POINTS)) {
+      delta.currentHP = player.getCurrentHP();
+      delta.maxHP = player.getMaxHP();
+    }
+    if (changes.isDirty(PlayerChanges.INVENTORY)) {
+      delta.pickups = clonePickups(player.getPickups());
+    }
+    if (changes.isDirty(PlayerChanges.STATS)) {
+      delta.gemsCollected = player.getGemsCollected();
+      delta.mobsKilled = player.getMobsKilled();
+      delta.numDeaths = player.getNumDeaths();
+    }
+    if (changes.isDirty(PlayerChanges.MAZE)) {
+      // The player's current tile may be a separate copy of the grid tile, until the first move
+      int currentIndex = maze.indexOf(player.getCurrentTile());
+      BitSet tiles = changes.getChangedTiles();
+      delta.changedTiles = new ArrayList<Tile>(tiles.cardinality());
+      for (int i = tiles.nextSetBit(0); i >= 0; i = tiles.nextSetBit(i + 1)) {
+        Tile tile = i == currentIndex ? player.getCurrentTile() : maze.getTile(i);
+        delta.changedTiles.add(tile.clone());
+      }
+      BitSet gems = changes.getRemovedGems();
+      delta.removedGems = new ArrayList<Coordinates>(gems.cardinality());
+      for (int i = gems.nextSetBit(0); i >= 0; i = gems.nextSetBit(i + 1)) {
+        delta.removedGems.add(new Coordinates().setX(maze.getX(i)).setY(maze.getY(i)));
+      }
+    }
+    return delta;
+  }
+
+  /**
+   * Applies the changes of this delta to the given player, which must be in the state the delta
+   * was computed against. Tiles and pickups are copied, so that the player and the delta stay
+   * independent.
+   *
+   * @param player the player to change, with a full maze
+   */
+  public void applyTo(Player player) {
+    if (has(PlayerChanges.MAZE)) {
+      List<List<Tile>> grid = player.getMaze().getGrid();
+      for (Tile tile : changedTiles) {
+        Coordinates coord = tile.getCoord();
+        grid.get(coord.getX()).set(coord.getY(), tile.clone());
+      }
+      List<Coordinates> gems = player.getMaze().getGemsRemaining();
+      if (gems != null) {
+        for (Coordinates removed : removedGems) {
+          for (Iterator<Coordinates> it = gems.iterator(); it.hasNext();) {
+            Coordinates gem = it.next();
+            if (gem.getX().equals(removed.getX()) && gem.getY().equals(removed.getY())) {
+              it.remove();
+              break;
+            }
+          }
+        }
+      }
+    }
+    if (has(PlayerChanges.POSITION)) {
+      player.setOrientation(orientation);
+    }
+    if (has(PlayerChanges.POSITION | PlayerChanges.MAZE)) {
+      // Point the current tile at the grid, so it reflects any tile replaced above
+      Coordinates coord = has(PlayerChanges.POSITION)
+          ? currentTile : player.getCurrentTile().getCoord();
+      player.setCurrentTile(player.getMaze().getGrid().get(coord.getX()).get(coord.getY()));
+    }
+    if (has(PlayerChanges.HIT_POINTS)) {
+      player.setCurrentHP(currentHP);
+      player.setMaxHP(maxHP);
+    }
+    if (has(PlayerChanges.INVENTORY)) {
+      player.setPickups(clonePickups(pickups));
+    }
+    if (has(PlayerChanges.STATS)) {
+      player.setGemsCollected(gemsCollected);
+      player.setMobsKilled(mobsKilled);
+      player.setNumDeaths(numDeaths);
+    }
+  }
+
+  /**
+   * Copies each pickup, so that the delta is not changed by later play, such as weapon wear.
+   */
+  static List<Pickup> clonePickups(List<Pickup> pickups) {
+    if (pickups == null) {
+      return null;
+    }
+    List<Pickup> copies = new ArrayList<Pickup>(pickups.size());
+    for (Pickup pickup : pickups) {
+      copies.add(pickup.clone());
+    }
+    return copies;
+  }
+
+  public String getHandle() {
+    return handle;
+  }
+
+  public long getBaseVersion() {
+    return baseVersion;
+  }
+
+  /**
+   * Returns the {@link PlayerChanges} flags of the parts of the player set in this delta.
+   */
+  public int getFlags() {
+    return flags;
+  }
+
+  public boolean has(int part) {
+    return (flags & part) != 0;
+  }
+
+  public Coordinates getCurrentTile() {
+    return currentTile;
+  }
+
+  public String getOrientation() {
+    return orientation;
+  }
+
+  public Long getCurrentHP() {
+    return currentHP;
+  }
+
+  public Long getMaxHP() {
+    return maxHP;
+  }
+
+  public List<Pickup> getPickups() {
+    return pickups;
+  }
+
+  public Long getGemsCollected() {
+    return gemsCollected;
+  }
+
+  public Long getMobsKilled() {
+    return mobsKilled;
+  }
+
+  public Long getNumDeaths() {
+    return numDeaths;
+  }
+
+  public List<Tile> getChangedTiles() {
+    return changedTiles;
+  }
+
+  public List<Coordinates> getRemovedGems() {
+    return removedGems;
+  }
+}
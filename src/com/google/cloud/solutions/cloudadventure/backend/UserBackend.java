@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.backend;
+
+import com.google.api.services.cloudadventure.model.GameUser;
+import com.google.api.services.cloudadventure.model.Handle;
+
+import java.io.IOException;
+
+/**
+ * The calls made to sign a user in and give them a handle, behind an interface so that the
+ * endpoint service can be swapped for a local stand-in.
+ * <p>
+ * Signing in finds the user of an account, creating it if there is none, in a single operation,
+ * so that a first sign-in does not wait for the lookup to come back to the UI before the user is
+ * created.
+ */
+public interface UserBackend {
+
+  /**
+   * A {@link Handle} value meaning that the handle has already been taken.
+   */
+  String HANDLE_TAKEN = "!";
+
+  /**
+   * Returns the user of the given account, creating it if there is none.
+   *
+   * @param account the Google account of the user
+   * @return the existing or new {@link GameUser}, whose handle is empty for a new user
+   * @throws IOException if the call fails or the backend returns no user
+   */
+  GameUser signIn(String account) throws IOException;
+
+  /**
+   * Claims the given handle for the calling user.
+   *
+   * @param handle the handle to claim
+   * @return the claimed {@link Handle}, whose value is {@link #HANDLE_TAKEN} if the handle
+   *         belongs to someone else
+   * @throws IOException if the call fails or the backend returns no handle
+   */
+  Handle claimHandle(String handle) throws IOException;
+
+  /**
+   * Saves the given user.
+   *
+   * @param user the full user to save
+   * @throws IOException if the call fails
+   */
+  void updateUser(GameUser user) throws IOException;
+}
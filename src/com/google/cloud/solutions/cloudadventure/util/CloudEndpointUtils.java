@@ -21,6 +21,11 @@ import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.googleapis.services.AbstractGoogleClient;
 import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
 import com.google.api.client.googleapis.services.GoogleClientRequestInitializer;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.jackson.JacksonFactory;
 
 import android.app.Activity;
 import android.util.Log;
@@ -33,35 +38,115 @@ import java.io.IOException;
  */
 public class CloudEndpointUtils {
 
+  /**
+   * Whether to connect to a local development server by default. The server can also be chosen at
+   * runtime, see {@link EndpointConfig}.
+   */
   public static final boolean LOCAL_ANDROID_RUN = false;
-  private static final String LOCAL_APP_ENGINE_SERVER_URL = "http://10.0.2.2:8888";
+  /**
+   * Whether game saves and sign-ins go to in-memory stand-ins instead of the server.
+   */
+  public static final boolean LOCAL_BACKEND_RUN = false;
 
   /**
-   * Updates the Google client builder to connect the appropriate server based on whether
-   * LOCAL_ANDROID_RUN is true or false.
+   * The JSON libraries that the endpoint client can use.
+   */
+  public enum JsonLibrary {
+    GSON, JACKSON
+  }
+
+  /**
+   * The JSON library used for all endpoint traffic. Only the classes of the chosen library are
+   * loaded, so this should stay the same across the whole application.
+   */
+  public static final JsonLibrary JSON_LIBRARY = JsonLibrary.GSON;
+
+  /**
+   * Updates the Google client builder to connect to the server, with the timeouts and gzip
+   * setting, of the current {@link EndpointConfig}, and to record every call in
+   * {@link EndpointStats}.
    * 
    * @param builder Google client builder
    * @return same Google client builder
    */
   public static <B extends AbstractGoogleClient.Builder> B updateBuilder(B builder) {
-    if (LOCAL_ANDROID_RUN) {
-      builder.setRootUrl(LOCAL_APP_ENGINE_SERVER_URL + "/_ah/api/");
+    return updateBuilder(builder, EndpointConfig.get());
+  }
+
+  /**
+   * Updates the Google client builder to connect to the server, with the timeouts and gzip
+   * setting, of the given {@link EndpointConfig}, and to record every call in
+   * {@link EndpointStats}.
+   * 
+   * @param builder Google client builder
+   * @param config endpoint configuration
+   * @return same Google client builder
+   */
+  public static <B extends AbstractGoogleClient.Builder> B updateBuilder(B builder,
+      EndpointConfig config) {
+    if (config.getRootUrl() != null) {
+      builder.setRootUrl(config.getRootUrl());
     }
 
-    // only enable GZip when connecting to remote server
-    final boolean enableGZip = builder.getRootUrl().startsWith("https:");
+    final int connectTimeout = config.getConnectTimeoutMillis();
+    final int readTimeout = config.getReadTimeoutMillis();
+    final HttpRequestInitializer initializer = builder.getHttpRequestInitializer();
+    builder.setHttpRequestInitializer(new HttpRequestInitializer() {
+      public void initialize(HttpRequest request) throws IOException {
+        if (initializer != null) {
+          initializer.initialize(request);
+        }
+        if (connectTimeout != EndpointConfig.DEFAULT_TIMEOUT) {
+          request.setConnectTimeout(connectTimeout);
+        }
+        if (readTimeout != EndpointConfig.DEFAULT_TIMEOUT) {
+          request.setReadTimeout(readTimeout);
+        }
+        EndpointStats.install(request);
+      }
+    });
+
+    // Responses are gzipped whenever the server can, as the HTTP client always accepts gzip
+    final boolean enableGZip = config.isGZipEnabled(builder.getRootUrl());
 
     builder.setGoogleClientRequestInitializer(new GoogleClientRequestInitializer() {
       public void initialize(AbstractGoogleClientRequest<?> request) throws IOException {
         if (!enableGZip) {
           request.setDisableGZipContent(true);
         }
+        request.getRequestHeaders()
+            .set(EndpointStats.METHOD_HEADER, EndpointStats.getMethodName(request));
       }
     });
 
     return builder;
   }
 
+  /**
+   * Creates the JSON factory for {@link #JSON_LIBRARY}, to build the Google client with.
+   *
+   * @return {@link JsonFactory}
+   */
+  public static JsonFactory newJsonFactory() {
+    return newJsonFactory(JSON_LIBRARY);
+  }
+
+  /**
+   * Creates the JSON factory for the given library.
+   *
+   * @param library JSON library
+   * @return {@link JsonFactory}
+   */
+  public static JsonFactory newJsonFactory(JsonLibrary library) {
+    switch (library) {
+      case JACKSON:
+        return new JacksonFactory();
+      case GSON:
+      default:
+        return new GsonFactory();
+    }
+  }
+
   /**
    * Logs the given message and shows an error alert dialog with it.
    * 
@@ -25,6 +25,26 @@ public class Constants {
   public static final String USER_ACCT_SHARED_PREFS_KEY = "USER_ID";
   public static final String USER_HANDLE_SHARED_PREFS_KEY = "USER_HANDLE";
 
+  /*
+   * Endpoint configuration SharedPreferences keys, read by EndpointConfig and GameUserCache.
+   */
+  public static final String ENDPOINT_PREFS_NAME = "ENDPOINT_PREFS";
+  public static final String ENDPOINT_ROOT_URL_PREFS_KEY = "ROOT_URL";
+  public static final String ENDPOINT_TRANSPORT_PREFS_KEY = "TRANSPORT";
+  public static final String ENDPOINT_CONNECT_TIMEOUT_PREFS_KEY = "CONNECT_TIMEOUT_MILLIS";
+  public static final String ENDPOINT_READ_TIMEOUT_PREFS_KEY = "READ_TIMEOUT_MILLIS";
+  public static final String ENDPOINT_GZIP_PREFS_KEY = "GZIP";
+  public static final String USER_CACHE_TTL_PREFS_KEY = "USER_CACHE_TTL_MILLIS";
+
+  /*
+   * GCM device registration SharedPreferences keys, read by DeviceRegistrationLedger.
+   */
+  public static final String GCM_PREFS_NAME = "GCM_PREFS";
+  public static final String GCM_USER_HANDLE_PREFS_KEY = "USER_HANDLE";
+  public static final String GCM_REG_ID_PREFS_KEY = "REG_ID";
+  public static final String GCM_APP_VERSION_PREFS_KEY = "APP_VERSION";
+  public static final String GCM_CONFIRMED_AT_PREFS_KEY = "CONFIRMED_AT_MILLIS";
+
   /*
    * Intent extra keys.
    */
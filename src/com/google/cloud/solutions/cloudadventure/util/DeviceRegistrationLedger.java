@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.util.Log;
+
+/**
+ * Remembers which user handle and GCM registration id the backend last confirmed for this device,
+ * for which version of the app and when, so that the device does not have to be registered with
+ * the backend again on every start.
+ * <p>
+ * An entry is only trusted for {@link #CONFIRMATION_LIFESPAN_MILLIS}, after which the registration
+ * is sent again in case the backend lost it.
+ */
+public class DeviceRegistrationLedger {
+
+  private static final String TAG = "DeviceRegistrationLedger";
+
+  public static final long CONFIRMATION_LIFESPAN_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+  private final SharedPreferences prefs;
+  private final int appVersion;
+
+  public DeviceRegistrationLedger(Context context) {
+    prefs = context.getSharedPreferences(Constants.GCM_PREFS_NAME, Context.MODE_PRIVATE);
+    appVersion = getAppVersion(context);
+  }
+
+  /**
+   * Tells whether the backend has confirmed the given registration recently enough, for the
+   * running version of the app.
+   *
+   * @param userHandle the handle of the user
+   * @param regId the GCM registration id of the device
+   */
+  public boolean isConfirmed(String userHandle, String regId) {
+    long confirmed = prefs.getLong(Constants.GCM_CONFIRMED_AT_PREFS_KEY, 0);
+    long age = System.currentTimeMillis() - confirmed;
+    return userHandle != null && userHandle.equals(getUserHandle())
+        && regId != null && regId.equals(prefs.getString(Constants.GCM_REG_ID_PREFS_KEY, null))
+        && appVersion == prefs.getInt(Constants.GCM_APP_VERSION_PREFS_KEY, Integer.MIN_VALUE)
+        && age >= 0 && age < CONFIRMATION_LIFESPAN_MILLIS;
+  }
+
+  /**
+   * Returns the handle of the user the backend last associated with this device, or {@code null}.
+   */
+  public String getUserHandle() {
+    return prefs.getString(Constants.GCM_USER_HANDLE_PREFS_KEY, null);
+  }
+
+  /**
+   * Records that the backend has just stored the given registration.
+   */
+  public void confirm(String userHandle, String regId) {
+    prefs.edit()
+        .putString(Constants.GCM_USER_HANDLE_PREFS_KEY, userHandle)
+        .putString(Constants.GCM_REG_ID_PREFS_KEY, regId)
+        .putInt(Constants.GCM_APP_VERSION_PREFS_KEY, appVersion)
+        .putLong(Constants.GCM_CONFIRMED_AT_PREFS_KEY, System.currentTimeMillis())
+        .commit();
+  }
+
+  /**
+   * Forgets the registration, so that the next one is sent to the backend.
+   */
+  public void clear() {
+    prefs.edit().clear().commit();
+  }
+
+  private static int getAppVersion(Context context) {
+    try {
+      return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionCode;
+    } catch (NameNotFoundException e) {
+      Log.w(TAG, "Could not read the app version", e);
+      return 0;
+    }
+  }
+}
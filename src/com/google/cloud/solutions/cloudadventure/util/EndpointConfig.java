@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import com.google.api.client.extensions.android.http.AndroidHttp;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Where and how the endpoint client connects: the root URL of the service, the HTTP transport,
+ * the connect and read timeouts, and whether request bodies are gzipped.
+ * <p>
+ * The configuration is read once, when the application starts, from the
+ * {@link Constants#ENDPOINT_PREFS_NAME} SharedPreferences, so that traffic can be pointed at
+ * another server, such as a nearer region, a caching proxy or a local stand-in, without a new
+ * build. Any setting that is missing or invalid keeps its default, which is the behaviour of a
+ * build without configuration: the root URL of the generated client, or of the local development
+ * server when {@link CloudEndpointUtils#LOCAL_ANDROID_RUN} is set, the transport recommended for
+ * the device, the HTTP library's timeouts, and gzip for HTTPS servers only.
+ */
+public class EndpointConfig {
+
+  /**
+   * The HTTP transports that the endpoint client can use.
+   */
+  public enum Transport {
+    /**
+     * The transport recommended for the device's Android version.
+     */
+    ANDROID_DEFAULT,
+    /**
+     * {@link java.net.HttpURLConnection}.
+     */
+    NET_HTTP,
+    /**
+     * The Apache HTTP client bundled with Android.
+     */
+    APACHE
+  }
+
+  /**
+   * Whether request bodies are gzipped.
+   */
+  public enum GZip {
+    /**
+     * Only when the root URL is an HTTPS one; local development servers do not support it.
+     */
+    AUTO, ON, OFF
+  }
+
+  /**
+   * A timeout that leaves the HTTP library's default in place.
+   */
+  public static final int DEFAULT_TIMEOUT = -1;
+
+  private static final String TAG = "EndpointConfig";
+  private static final String LOCAL_APP_ENGINE_SERVER_URL = "http://10.0.2.2:8888";
+
+  private static volatile EndpointConfig current = new EndpointConfig(
+      CloudEndpointUtils.LOCAL_ANDROID_RUN ? LOCAL_APP_ENGINE_SERVER_URL + "/_ah/api/" : null,
+      Transport.ANDROID_DEFAULT, DEFAULT_TIMEOUT, DEFAULT_TIMEOUT, GZip.AUTO);
+
+  private final String rootUrl;
+  private final Transport transport;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final GZip gzip;
+
+  /**
+   * @param rootUrl the root URL of the service, or {@code null} for the generated client's
+   * @param transport the HTTP transport
+   * @param connectTimeoutMillis the connect timeout, or {@link #DEFAULT_TIMEOUT}
+   * @param readTimeoutMillis the read timeout, or {@link #DEFAULT_TIMEOUT}
+   * @param gzip whether request bodies are gzipped
+   */
+  public EndpointConfig(String rootUrl, Transport transport, int connectTimeoutMillis,
+      int readTimeoutMillis, GZip gzip) {
+    this.rootUrl = rootUrl;
+    this.transport = transport;
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.gzip = gzip;
+  }
+
+  /**
+   * Reads the configuration from SharedPreferences. Called once, from
+   * {@link com.google.cloud.solutions.cloudadventure.CloudAdventureApplication#onCreate()},
+   * before any endpoint client is built.
+   *
+   * @param context any context of the application
+   */
+  public static void init(Context context) {
+    SharedPreferences prefs =
+        context.getSharedPreferences(Constants.ENDPOINT_PREFS_NAME, Context.MODE_PRIVATE);
+    EndpointConfig defaults = current;
+    current = new EndpointConfig(
+        prefs.getString(Constants.ENDPOINT_ROOT_URL_PREFS_KEY, defaults.rootUrl),
+        readEnum(prefs, Constants.ENDPOINT_TRANSPORT_PREFS_KEY, Transport.class,
+            defaults.transport),
+        readTimeout(prefs, Constants.ENDPOINT_CONNECT_TIMEOUT_PREFS_KEY,
+            defaults.connectTimeoutMillis),
+        readTimeout(prefs, Constants.ENDPOINT_READ_TIMEOUT_PREFS_KEY, defaults.readTimeoutMillis),
+        readEnum(prefs, Constants.ENDPOINT_GZIP_PREFS_KEY, GZip.class, defaults.gzip));
+    Log.i(TAG, "Endpoint configuration: " + current);
+  }
+
+  /**
+   * Returns the configuration that endpoint clients are built with.
+   */
+  public static EndpointConfig get() {
+    return current;
+  }
+
+  public String getRootUrl() {
+    return rootUrl;
+  }
+
+  public Transport getTransport() {
+    return transport;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  public int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  public GZip getGZip() {
+    return gzip;
+  }
+
+  /**
+   * Creates a new HTTP transport of the configured kind.
+   *
+   * @return {@link HttpTransport}
+   */
+  public HttpTransport newTransport() {
+    switch (transport) {
+      case NET_HTTP:
+        return new NetHttpTransport();
+      case APACHE:
+        return new ApacheHttpTransport();
+      case ANDROID_DEFAULT:
+      default:
+        return AndroidHttp.newCompatibleTransport();
+    }
+  }
+
+  /**
+   * Returns whether request bodies sent to the given root URL are gzipped.
+   */
+  public boolean isGZipEnabled(String rootUrl) {
+    switch (gzip) {
+      case ON:
+        return true;
+      case OFF:
+        return false;
+      case AUTO:
+      default:
+        return rootUrl.startsWith("https:");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "rootUrl=" + (rootUrl == null ? "default" : rootUrl) + ", transport=" + transport
+        + ", connectTimeoutMillis=" + connectTimeoutMillis + ", readTimeoutMillis="
+        + readTimeoutMillis + ", gzip=" + gzip;
+  }
+
+  private static <E extends Enum<E>> E readEnum(SharedPreferences prefs, String key,
+      Class<E> type, E defaultValue) {
+    String value = prefs.getString(key, null);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Enum.valueOf(type, value);
+    } catch (IllegalArgumentException e) {
+      Log.w(TAG, "Ignoring invalid " + key + ": " + value);
+      return defaultValue;
+    }
+  }
+
+  private static int readTimeout(SharedPreferences prefs, String key, int defaultValue) {
+    int value = prefs.getInt(key, defaultValue);
+    if (value < 0 && value != DEFAULT_TIMEOUT) {
+      Log.w(TAG, "Ignoring invalid " + key + ": " + value);
+      return defaultValue;
+    }
+    return value;
+  }
+}
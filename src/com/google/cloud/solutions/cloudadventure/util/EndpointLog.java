@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import android.util.Log;
+
+/**
+ * The log of the endpoint client code that also runs on a desktop JVM, in the benchmarks and the
+ * load simulation, such as {@link EndpointStats} and {@code EndpointLobby}.
+ * <p>
+ * Lines go to the Android log unless {@link #setLogger(Logger)} replaces it, so that the code
+ * never calls into {@code android.util.Log} where there is no Android runtime.
+ */
+public class EndpointLog {
+
+  /**
+   * Where the lines are written.
+   */
+  public interface Logger {
+    void debug(String tag, String message);
+
+    void info(String tag, String message);
+  }
+
+  private static final Logger ANDROID_LOGGER = new Logger() {
+    @Override
+    public void debug(String tag, String message) {
+      Log.d(tag, message);
+    }
+
+    @Override
+    public void info(String tag, String message) {
+      Log.i(tag, message);
+    }
+  };
+
+  private static volatile Logger logger = ANDROID_LOGGER;
+
+  private EndpointLog() {}
+
+  /**
+   * Replaces the logger that lines are written to, or restores the Android log if {@code null}.
+   */
+  public static void setLogger(Logger newLogger) {
+    logger = newLogger == null ? ANDROID_LOGGER : newLogger;
+  }
+
+  public static void d(String tag, String message) {
+    logger.debug(tag, message);
+  }
+
+  public static void i(String tag, String message) {
+    logger.info(tag, message);
+  }
+}
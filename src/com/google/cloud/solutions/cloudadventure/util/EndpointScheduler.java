@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the AsyncTasks that call the endpoint service, one lane of tasks at a time per
+ * {@link Priority}.
+ * <p>
+ * Each lane has its own thread and runs its tasks one after the other in submission order, as
+ * {@link AsyncTask#execute(Object...)} ran every task at this app's target SDK. Calls that depend
+ * on each other, such as a save followed by the end of the game, or leaving a game followed by
+ * cancelling it, must therefore go in the same lane. The lanes run alongside each other, so
+ * game-critical calls are not stuck behind background chatter such as friend invites.
+ * <p>
+ * Tasks can be tied to an owner, usually the Activity that started them, and cancelled together
+ * when that owner is destroyed. The queueing and running time of every task is logged.
+ */
+public class EndpointScheduler {
+
+  /**
+   * Priority lanes, from the most to the least urgent.
+   */
+  public enum Priority {
+    /**
+     * Calls on the game's critical path, such as joining, saving, starting and ending a game, and
+     * removing a player from it.
+     */
+    CRITICAL,
+    /**
+     * Calls the user is waiting on, such as loading a profile.
+     */
+    NORMAL,
+    /**
+     * Calls nobody is waiting on, such as invites and device registration.
+     */
+    BACKGROUND
+  }
+
+  private static final String TAG = "EndpointScheduler";
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private static final Map<Priority, ThreadPoolExecutor> lanes =
+      new EnumMap<Priority, ThreadPoolExecutor>(Priority.class);
+
+  static {
+    for (final Priority priority : Priority.values()) {
+      ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              return new Thread(runnable, "Endpoint " + priority);
+            }
+          });
+      lane.allowCoreThreadTimeOut(true);
+      lanes.put(priority, lane);
+    }
+  }
+
+  private static final Map<Object, List<AsyncTask<?, ?, ?>>> tasksByOwner =
+      new WeakHashMap<Object, List<AsyncTask<?, ?, ?>>>();
+
+  private EndpointScheduler() {}
+
+  /**
+   * Executes the task in the lane of the given priority, after the tasks already queued in that
+   * lane. Must be called from the UI thread, like {@link AsyncTask#execute(Object...)}.
+   *
+   * @param owner the object whose lifecycle the task is tied to, cancelled through
+   *        {@link #cancelAll(Object)}, or {@code null} if the task must always run to completion
+   * @param priority the priority lane of the task
+   * @param task the task to execute
+   * @param params the parameters of the task
+   */
+  public static <Params> void execute(Object owner, Priority priority,
+      AsyncTask<Params, ?, ?> task, Params... params) {
+    if (owner != null) {
+      synchronized (tasksByOwner) {
+        List<AsyncTask<?, ?, ?>> tasks = tasksByOwner.get(owner);
+        if (tasks == null) {
+          tasks = new ArrayList<AsyncTask<?, ?, ?>>();
+          tasksByOwner.put(owner, tasks);
+        }
+        for (Iterator<AsyncTask<?, ?, ?>> it = tasks.iterator(); it.hasNext();) {
+          if (it.next().getStatus() == AsyncTask.Status.FINISHED) {
+            it.remove();
+          }
+        }
+        tasks.add(task);
+      }
+    }
+    task.executeOnExecutor(new LaneExecutor(priority, task.getClass().getSimpleName()), params);
+  }
+
+  /**
+   * Cancels all of the unfinished tasks started for the given owner. Tasks that have not started
+   * yet will not run, and none of the cancelled tasks will call their onPostExecute().
+   *
+   * @param owner the owner passed to {@link #execute}
+   */
+  public static void cancelAll(Object owner) {
+    List<AsyncTask<?, ?, ?>> tasks;
+    synchronized (tasksByOwner) {
+      tasks = tasksByOwner.remove(owner);
+    }
+    if (tasks != null) {
+      for (AsyncTask<?, ?, ?> task : tasks) {
+        if (task.getStatus() != AsyncTask.Status.FINISHED && task.cancel(false)) {
+          Log.i(TAG, "Cancelled " + task.getClass().getSimpleName());
+        }
+      }
+    }
+  }
+
+  /**
+   * Submits the runnables of a single task to its lane.
+   */
+  private static class LaneExecutor implements Executor {
+    private final Priority priority;
+    private final String name;
+
+    LaneExecutor(Priority priority, String name) {
+      this.priority = priority;
+      this.name = name;
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+      lanes.get(priority).execute(new TimedRunnable(priority, name, runnable));
+    }
+  }
+
+  private static class TimedRunnable implements Runnable {
+    private final Priority priority;
+    private final String name;
+    private final Runnable runnable;
+    private final long queuedAt = SystemClock.elapsedRealtime();
+
+    TimedRunnable(Priority priority, String name, Runnable runnable) {
+      this.priority = priority;
+      this.name = name;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+      long startedAt = SystemClock.elapsedRealtime();
+      try {
+        runnable.run();
+      } finally {
+        long endedAt = SystemClock.elapsedRealtime();
+        Log.d(TAG, name + " [" + priority + "] queued " + (startedAt - queuedAt) + " ms, ran "
+            + (endedAt - startedAt) + " ms");
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.cloudadventure.Cloudadventure;
+import com.google.cloud.solutions.cloudadventure.backend.EndpointGameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.EndpointUserBackend;
+import com.google.cloud.solutions.cloudadventure.backend.GameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.LocalGameBackend;
+import com.google.cloud.solutions.cloudadventure.backend.LocalUserBackend;
+import com.google.cloud.solutions.cloudadventure.backend.UserBackend;
+
+/**
+ * Holds the single {@link Cloudadventure} endpoint client shared by every Activity, Fragment,
+ * Service and AsyncTask in this application.
+ * <p>
+ * The client, its HTTP transport and its JSON factory are all thread-safe, so one instance is
+ * built lazily on first use and reused for the lifetime of the process. This keeps the
+ * transport's keep-alive connections open across screen changes instead of paying the transport
+ * and JSON factory set-up cost on every screen.
+ */
+public class EndpointService {
+
+  private static volatile Cloudadventure service;
+
+  private EndpointService() {}
+
+  /**
+   * Returns the shared endpoint client, building it on first use.
+   *
+   * @return the process-wide {@link Cloudadventure} client
+   */
+  public static Cloudadventure get() {
+    Cloudadventure result = service;
+    if (result == null) {
+      synchronized (EndpointService.class) {
+        result = service;
+        if (result == null) {
+          result = service = build();
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the {@link GameBackend} that game saves are sent to: the in-memory stand-in when
+   * {@link CloudEndpointUtils#LOCAL_BACKEND_RUN} is set, or the shared endpoint client otherwise.
+   *
+   * @return {@link GameBackend}
+   */
+  public static GameBackend getBackend() {
+    if (CloudEndpointUtils.LOCAL_BACKEND_RUN) {
+      return LocalGameBackend.get();
+    }
+    return new EndpointGameBackend(get());
+  }
+
+  /**
+   * Returns the {@link UserBackend} that sign-ins are sent to: the in-memory stand-in when
+   * {@link CloudEndpointUtils#LOCAL_BACKEND_RUN} is set, or the shared endpoint client otherwise.
+   *
+   * @return {@link UserBackend}
+   */
+  public static UserBackend getUserBackend() {
+    if (CloudEndpointUtils.LOCAL_BACKEND_RUN) {
+      return LocalUserBackend.get();
+    }
+    return new EndpointUserBackend(get());
+  }
+
+  private static Cloudadventure build() {
+    EndpointConfig config = EndpointConfig.get();
+    HttpTransport transport = config.newTransport();
+    JsonFactory jsonFactory = CloudEndpointUtils.newJsonFactory();
+    Cloudadventure.Builder builder = new Cloudadventure.Builder(transport, jsonFactory, null);
+    return CloudEndpointUtils.updateBuilder(builder, config).build();
+  }
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpEncoding;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.client.util.ObjectParser;
+import com.google.api.client.util.StreamingContent;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records, for every endpoint method, how many calls were made, how many bytes they sent and
+ * received before and after gzip, and how long they took, from the start of the request to the
+ * end of the response body. The totals and the most recent calls can be shown with
+ * {@link #dump()} or written to the log with {@link #log()}.
+ * <p>
+ * {@link CloudEndpointUtils#updateBuilder} installs the instrumentation on every request of the
+ * endpoint client. Responses read through {@code executeUnparsed()} are only measured if their
+ * body is read through {@link #getContent(HttpResponse)}.
+ * <p>
+ * Calls are timed with {@link System#nanoTime()} and written to the {@link EndpointLog}, so that
+ * the same client can be built on a desktop JVM.
+ */
+public class EndpointStats {
+
+  /**
+   * The request header that carries the name of the endpoint method from the
+   * {@link AbstractGoogleClientRequest} to its HTTP request. It is removed before the request is
+   * sent.
+   */
+  static final String METHOD_HEADER = "X-Cloudadventure-Method";
+
+  private static final String TAG = "EndpointStats";
+  private static final int RECENT_CALLS = 50;
+
+  private static final Map<String, MethodStats> methods = new TreeMap<String, MethodStats>();
+  private static final ArrayDeque<String> recentCalls = new ArrayDeque<String>();
+
+  private EndpointStats() {}
+
+  /**
+   * Returns the name under which calls of the given request are recorded, such as
+   * {@code players.joinGame}.
+   */
+  static String getMethodName(AbstractGoogleClientRequest<?> request) {
+    String name = request.getClass().getName();
+    name = name.substring(name.indexOf('$') + 1).replace('$', '.');
+    StringBuilder methodName = new StringBuilder(name.length());
+    boolean wordStart = true;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      methodName.append(wordStart ? Character.toLowerCase(c) : c);
+      wordStart = c == '.';
+    }
+    return methodName.toString();
+  }
+
+  /**
+   * Instruments the given HTTP request. Called from the client's HTTP request initializer.
+   */
+  static void install(HttpRequest request) {
+    Interceptor interceptor = new Interceptor(request.getInterceptor(),
+        request.getResponseInterceptor(), request.getIOExceptionHandler());
+    request.setInterceptor(interceptor);
+    request.setResponseInterceptor(interceptor);
+    request.setIOExceptionHandler(interceptor);
+  }
+
+  /**
+   * Returns the body of a response, counting its bytes towards the call that returned it, for
+   * callers of {@code executeUnparsed()} that read the body themselves.
+   *
+   * @param response the response of an instrumented request
+   * @return the content of the response
+   */
+  public static InputStream getContent(HttpResponse response) throws IOException {
+    InputStream content = response.getContent();
+    ObjectParser parser = response.getRequest().getParser();
+    if (content == null || !(parser instanceof CountingParser)) {
+      return content;
+    }
+    return new CountingInputStream(content, ((CountingParser) parser).interceptor.call);
+  }
+
+  /**
+   * Returns a report of the totals of every method and of the most recent calls.
+   */
+  public static synchronized String dump() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format(Locale.US, "%-24s %5s %4s %9s %6s %9s %6s %7s %7s%n", "method",
+        "calls", "errs", "req B", "req gz", "resp B", "resp gz", "avg ms", "max ms"));
+    for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+      MethodStats stats = entry.getValue();
+      report.append(String.format(Locale.US, "%-24s %5d %4d %9d %6s %9d %6s %7d %7d%n",
+          entry.getKey(), stats.calls, stats.errors, stats.requestBytes,
+          ratio(stats.requestWireBytes, stats.requestBytes), stats.responseBytes,
+          ratio(stats.responseWireBytes, stats.responseBytesWithWireSize),
+          stats.calls == 0 ? 0 : stats.totalMillis / stats.calls, stats.maxMillis));
+    }
+    report.append("\nMost recent calls:\n");
+    for (String call : recentCalls) {
+      report.append(call).append('\n');
+    }
+    return report.toString();
+  }
+
+  /**
+   * Writes {@link #dump()} to the log, a line at a time.
+   */
+  public static void log() {
+    for (String line : dump().split("\n")) {
+      EndpointLog.i(TAG, line);
+    }
+  }
+
+  public static synchronized void reset() {
+    methods.clear();
+    recentCalls.clear();
+  }
+
+  private static synchronized void record(Call call) {
+    MethodStats stats = methods.get(call.method);
+    if (stats == null) {
+      stats = new MethodStats();
+      methods.put(call.method, stats);
+    }
+    long millis = (call.endedAt - call.startedAt) / 1000000;
+    stats.calls++;
+    if (call.failed) {
+      stats.errors++;
+    }
+    stats.requestBytes += call.requestBytes;
+    stats.requestWireBytes += call.requestWireBytes;
+    stats.responseBytes += call.responseBytes;
+    if (call.responseWireBytes >= 0) {
+      stats.responseWireBytes += call.responseWireBytes;
+      stats.responseBytesWithWireSize += call.responseBytes;
+    }
+    stats.totalMillis += millis;
+    stats.maxMillis = Math.max(stats.maxMillis, millis);
+
+    String line = String.format(Locale.US, "%s %s %s, sent %d B (%d on the wire), "
+        + "received %d B (%s on the wire), %d ms",
+        new SimpleDateFormat("HH:mm:ss", Locale.US).format(new Date()), call.method,
+        call.failed ? "failed" : Integer.toString(call.statusCode), call.requestBytes,
+        call.requestWireBytes, call.responseBytes,
+        call.responseWireBytes < 0 ? "?" : Long.toString(call.responseWireBytes), millis);
+    if (recentCalls.size() == RECENT_CALLS) {
+      recentCalls.removeFirst();
+    }
+    recentCalls.addLast(line);
+    EndpointLog.d(TAG, line);
+  }
+
+  /**
+   * Returns the size after gzip as a percentage of the size before, or "-" if nothing was sent.
+   */
+  private static String ratio(long wireBytes, long bytes) {
+    return bytes == 0 ? "-" : (wireBytes * 100 / bytes) + "%";
+  }
+
+  private static class MethodStats {
+    int calls;
+    int errors;
+    long requestBytes;
+    long requestWireBytes;
+    long responseBytes;
+    long responseWireBytes;
+    long responseBytesWithWireSize;
+    long totalMillis;
+    long maxMillis;
+  }
+
+  /**
+   * One attempt at an endpoint call. It is recorded once, when its response body has been read,
+   * when it turns out to have no body, or when it fails.
+   */
+  private static class Call {
+    final String method;
+    final long startedAt = System.nanoTime();
+    long endedAt;
+    int statusCode;
+    boolean failed;
+    long requestBytes;
+    long requestWireBytes;
+    long responseBytes;
+    long responseWireBytes = -1;
+    private boolean recorded;
+
+    Call(String method) {
+      this.method = method;
+    }
+
+    void end(boolean failed) {
+      if (recorded) {
+        return;
+      }
+      recorded = true;
+      endedAt = System.nanoTime();
+      this.failed |= failed;
+      record(this);
+    }
+  }
+
+  /**
+   * Starts a {@link Call} for every attempt of an HTTP request, and wraps the request's content,
+   * encoding and parser to count the bytes of the call.
+   */
+  private static class Interceptor
+      implements HttpExecuteInterceptor, HttpResponseInterceptor, HttpIOExceptionHandler {
+    private final HttpExecuteInterceptor executeInterceptor;
+    private final HttpResponseInterceptor responseInterceptor;
+    private final HttpIOExceptionHandler ioExceptionHandler;
+    private String method;
+    Call call;
+
+    Interceptor(HttpExecuteInterceptor executeInterceptor,
+        HttpResponseInterceptor responseInterceptor, HttpIOExceptionHandler ioExceptionHandler) {
+      this.executeInterceptor = executeInterceptor;
+      this.responseInterceptor = responseInterceptor;
+      this.ioExceptionHandler = ioExceptionHandler;
+    }
+
+    @Override
+    public void intercept(HttpRequest request) throws IOException {
+      if (executeInterceptor != null) {
+        executeInterceptor.intercept(request);
+      }
+      if (method == null) {
+        Object header = request.getHeaders().remove(METHOD_HEADER);
+        method = header != null
+            ? header.toString() : request.getRequestMethod() + " " + request.getUrl().getRawPath();
+      }
+      if (call != null) {
+        // A retry; the previous attempt failed
+        call.end(true);
+      }
+      call = new Call(method);
+      // The client sets these after the request initializer has run, and they stay wrapped across
+      // retries
+      HttpContent content = request.getContent();
+      if (content != null && !(content instanceof CountingContent)) {
+        request.setContent(new CountingContent(content, this));
+      }
+      HttpEncoding encoding = request.getEncoding();
+      if (encoding != null && !(encoding instanceof CountingEncoding)) {
+        request.setEncoding(new CountingEncoding(encoding, this));
+      }
+      ObjectParser parser = request.getParser();
+      if (parser != null && !(parser instanceof CountingParser)) {
+        request.setParser(new CountingParser(parser, this));
+      }
+    }
+
+    @Override
+    public void interceptResponse(HttpResponse response) throws IOException {
+      if (responseInterceptor != null) {
+        responseInterceptor.interceptResponse(response);
+      }
+      Call current = call;
+      current.statusCode = response.getStatusCode();
+      if (current.requestWireBytes == 0) {
+        current.requestWireBytes = current.requestBytes;
+      }
+      Long contentLength = response.getHeaders().getContentLength();
+      if (contentLength != null) {
+        current.responseWireBytes = contentLength;
+      }
+      if (!response.isSuccessStatusCode()) {
+        // The body is read as an error message, without the parser
+        current.end(true);
+      } else if (response.getStatusCode() == 204
+          || (contentLength != null && contentLength == 0)) {
+        current.end(false);
+      }
+    }
+
+    @Override
+    public boolean handleIOException(HttpRequest request, boolean supportsRetry)
+        throws IOException {
+      call.end(true);
+      return ioExceptionHandler != null
+          && ioExceptionHandler.handleIOException(request, supportsRetry);
+    }
+  }
+
+  private static class CountingContent implements HttpContent {
+    private final HttpContent content;
+    private final Interceptor interceptor;
+
+    CountingContent(HttpContent content, Interceptor interceptor) {
+      this.content = content;
+      this.interceptor = interceptor;
+    }
+
+    @Override
+    public long getLength() throws IOException {
+      return content.getLength();
+    }
+
+    @Override
+    public String getType() {
+      return content.getType();
+    }
+
+    @Override
+    public boolean retrySupported() {
+      return content.retrySupported();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      CountingOutputStream counter = new CountingOutputStream(out);
+      content.writeTo(counter);
+      interceptor.call.requestBytes += counter.count;
+    }
+  }
+
+  private static class CountingEncoding implements HttpEncoding {
+    private final HttpEncoding encoding;
+    private final Interceptor interceptor;
+
+    CountingEncoding(HttpEncoding encoding, Interceptor interceptor) {
+      this.encoding = encoding;
+      this.interceptor = interceptor;
+    }
+
+    @Override
+    public String getName() {
+      return encoding.getName();
+    }
+
+    @Override
+    public void encode(StreamingContent content, OutputStream out) throws IOException {
+      CountingOutputStream counter = new CountingOutputStream(out);
+      encoding.encode(content, counter);
+      interceptor.call.requestWireBytes += counter.count;
+    }
+  }
+
+  private static class CountingParser implements ObjectParser {
+    private final ObjectParser parser;
+    final Interceptor interceptor;
+
+    CountingParser(ObjectParser parser, Interceptor interceptor) {
+      this.parser = parser;
+      this.interceptor = interceptor;
+    }
+
+    @Override
+    public <T> T parseAndClose(InputStream in, Charset charset, Class<T> dataClass)
+        throws IOException {
+      return parser.parseAndClose(new CountingInputStream(in, interceptor.call), charset,
+          dataClass);
+    }
+
+    @Override
+    public Object parseAndClose(InputStream in, Charset charset, Type dataType)
+        throws IOException {
+      return parser.parseAndClose(new CountingInputStream(in, interceptor.call), charset,
+          dataType);
+    }
+
+    @Override
+    public <T> T parseAndClose(Reader reader, Class<T> dataClass) throws IOException {
+      return parser.parseAndClose(reader, dataClass);
+    }
+
+    @Override
+    public Object parseAndClose(Reader reader, Type dataType) throws IOException {
+      return parser.parseAndClose(reader, dataType);
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+  /**
+   * Counts the bytes of a response body, and ends its call when the body has been read or closed.
+   */
+  private static class CountingInputStream extends FilterInputStream {
+    private final Call call;
+
+    CountingInputStream(InputStream in, Call call) {
+      super(in);
+      this.call = call;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b < 0) {
+        call.end(false);
+      } else {
+        call.responseBytes++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read < 0) {
+        call.end(false);
+      } else {
+        call.responseBytes += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      call.responseBytes += skipped;
+      return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        in.close();
+      } finally {
+        call.end(false);
+      }
+    }
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.util.Key;
+import com.google.api.services.cloudadventure.Cloudadventure;
+import com.google.api.services.cloudadventure.model.GameUser;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the {@link GameUser} returned by {@code users.getByHandle}, in memory and in a file per
+ * handle in the app's cache directory, so that the profile and game set-up screens can be shown
+ * as soon as they open.
+ * <p>
+ * A cached user is served without a round trip for {@link Constants#USER_CACHE_TTL_PREFS_KEY}
+ * milliseconds of the {@link Constants#ENDPOINT_PREFS_NAME} SharedPreferences, five minutes by
+ * default. After that it is revalidated with the {@code etag} of the response when the backend
+ * sent one, and downloaded again otherwise. Callers that change a user on the backend, such as
+ * friend invites and acceptances, must {@link #invalidate} it.
+ * <p>
+ * Every user handed out is a copy, so callers are free to modify it. Any failure to read or
+ * write the cache files is logged and otherwise ignored.
+ * <p>
+ * The memory and disk entries, and the count of invalidations that decides whether a response
+ * may still be cached, are only touched while holding a single lock, so that a response cannot
+ * be cached after an invalidation that it raced with.
+ */
+public class GameUserCache {
+
+  /**
+   * A cached user and when it was last known to be current. Public for the JSON parser only.
+   */
+  public static class Entry extends GenericJson {
+    @Key
+    private GameUser user;
+    @Key
+    private Long fetchedAt;
+  }
+
+  public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+
+  private static final String TAG = "GameUserCache";
+  private static final String DIRECTORY = "users";
+  private static final String SUFFIX = ".json";
+  private static final String ETAG = "etag";
+  private static final int MAX_MEMORY_ENTRIES = 32;
+
+  private static volatile GameUserCache current;
+
+  private final File directory;
+  private final long ttlMillis;
+  private final Object lock = new Object();
+  private final JsonFactory jsonFactory = CloudEndpointUtils.newJsonFactory();
+  private final Map<String, Entry> memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > MAX_MEMORY_ENTRIES;
+    }
+  };
+  private long invalidations;
+
+  /**
+   * @param directory the directory to keep the cache files in
+   * @param ttlMillis how long a cached user is served without a round trip
+   */
+  public GameUserCache(File directory, long ttlMillis) {
+    this.directory = directory;
+    this.ttlMillis = ttlMillis;
+  }
+
+  /**
+   * Creates the application's cache, reading its TTL from SharedPreferences. Called once, from
+   * {@link com.google.cloud.solutions.cloudadventure.CloudAdventureApplication#onCreate()}.
+   *
+   * @param context any context of the application
+   */
+  public static void init(Context context) {
+    SharedPreferences prefs =
+        context.getSharedPreferences(Constants.ENDPOINT_PREFS_NAME, Context.MODE_PRIVATE);
+    long ttlMillis = prefs.getLong(Constants.USER_CACHE_TTL_PREFS_KEY, DEFAULT_TTL_MILLIS);
+    if (ttlMillis < 0) {
+      Log.w(TAG, "Ignoring invalid " + Constants.USER_CACHE_TTL_PREFS_KEY + ": " + ttlMillis);
+      ttlMillis = DEFAULT_TTL_MILLIS;
+    }
+    current = new GameUserCache(new File(context.getCacheDir(), DIRECTORY), ttlMillis);
+  }
+
+  /**
+   * Returns the application's cache.
+   */
+  public static GameUserCache get() {
+    return current;
+  }
+
+  /**
+   * Returns the cached user with the given handle, however old, without any round trip. This may
+   * read from disk, so it should not be called from the UI thread.
+   *
+   * @param handle the handle of the user
+   * @return a copy of the cached {@link GameUser}, or {@code null} if there is none
+   */
+  public GameUser peek(String handle) {
+    Entry entry = getEntry(handle);
+    return entry == null ? null : entry.user.clone();
+  }
+
+  /**
+   * Returns the user with the given handle: the cached one if it is recent enough or the backend
+   * says it has not changed, or a fresh one otherwise. Responses that carry an
+   * {@code error_message} are returned as they are and not cached.
+   *
+   * @param handle the handle of the user
+   * @return a copy of the {@link GameUser}
+   * @throws IOException if the backend could not be reached
+   */
+  public GameUser getByHandle(String handle) throws IOException {
+    Entry entry = getEntry(handle);
+    if (entry != null && isFresh(entry)) {
+      return entry.user.clone();
+    }
+    Cloudadventure service = EndpointService.get();
+    Cloudadventure.Users.GetByHandle request = service.users().getByHandle(handle);
+    // A response that was requested before an invalidation may predate the change and is not kept
+    long invalidationsBefore;
+    synchronized (lock) {
+      invalidationsBefore = invalidations;
+    }
+    Object etag = entry == null ? null : entry.user.get(ETAG);
+    if (etag instanceof String) {
+      request.getRequestHeaders().setIfNoneMatch((String) etag);
+    }
+    GameUser user;
+    try {
+      user = SingleFlight.execute(request);
+    } catch (HttpResponseException e) {
+      if (etag != null && e.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED) {
+        putIfNotInvalidated(handle, entry.user, invalidationsBefore);
+        return entry.user.clone();
+      }
+      throw e;
+    }
+    if (user != null && !user.containsKey("error_message")) {
+      putIfNotInvalidated(handle, user.clone(), invalidationsBefore);
+    }
+    return user;
+  }
+
+  /**
+   * Caches the given user, as just returned or accepted by the backend.
+   */
+  public void put(GameUser user) {
+    put(user.getHandle(), user.clone());
+  }
+
+  /**
+   * Forgets the user with the given handle, so that the next request for it goes to the backend.
+   */
+  public void invalidate(String handle) {
+    if (handle == null) {
+      return;
+    }
+    synchronized (lock) {
+      invalidations++;
+      memory.remove(handle);
+      File file = fileFor(handle);
+      if (file != null) {
+        file.delete();
+      }
+    }
+  }
+
+  private boolean isFresh(Entry entry) {
+    long age = System.currentTimeMillis() - entry.fetchedAt;
+    return age >= 0 && age < ttlMillis;
+  }
+
+  private Entry getEntry(String handle) {
+    if (handle == null) {
+      return null;
+    }
+    synchronized (lock) {
+      Entry entry = memory.get(handle);
+      if (entry == null) {
+        entry = read(handle);
+        if (entry != null) {
+          memory.put(handle, entry);
+        }
+      }
+      return entry;
+    }
+  }
+
+  /**
+   * Caches the user unless a user has been invalidated since {@code invalidationsBefore} was
+   * read, as the user may then predate the change.
+   */
+  private void putIfNotInvalidated(String handle, GameUser user, long invalidationsBefore) {
+    synchronized (lock) {
+      if (invalidations == invalidationsBefore) {
+        put(handle, user);
+      }
+    }
+  }
+
+  private void put(String handle, GameUser user) {
+    if (handle == null) {
+      return;
+    }
+    Entry entry = new Entry();
+    entry.user = user;
+    entry.fetchedAt = System.currentTimeMillis();
+    synchronized (lock) {
+      memory.put(handle, entry);
+      write(handle, entry);
+    }
+  }
+
+  private Entry read(String handle) {
+    File file = fileFor(handle);
+    if (file == null || !file.exists()) {
+      return null;
+    }
+    InputStream in = null;
+    try {
+      in = new BufferedInputStream(new FileInputStream(file));
+      Entry entry = jsonFactory.fromInputStream(in, Entry.class);
+      if (entry.user == null || entry.fetchedAt == null) {
+        throw new IOException("Incomplete entry");
+      }
+      return entry;
+    } catch (IOException e) {
+      Log.w(TAG, "Discarding unreadable cache entry of " + handle, e);
+      file.delete();
+      return null;
+    } catch (IllegalArgumentException e) {
+      Log.w(TAG, "Discarding unreadable cache entry of " + handle, e);
+      file.delete();
+      return null;
+    } finally {
+      closeQuietly(in);
+    }
+  }
+
+  private void write(String handle, Entry entry) {
+    File file = fileFor(handle);
+    if (file == null || (!directory.isDirectory() && !directory.mkdirs())) {
+      return;
+    }
+    File temp = new File(directory, file.getName() + ".tmp");
+    OutputStream out = null;
+    try {
+      out = new BufferedOutputStream(new FileOutputStream(temp));
+      out.write(jsonFactory.toByteArray(entry));
+      out.close();
+      out = null;
+      if (!temp.renameTo(file)) {
+        throw new IOException("Unable to rename " + temp);
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to write cache entry of " + handle, e);
+      temp.delete();
+    } finally {
+      closeQuietly(out);
+    }
+  }
+
+  private File fileFor(String handle) {
+    try {
+      return new File(directory, URLEncoder.encode(handle, "UTF-8") + SUFFIX);
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // Ignored
+      }
+    }
+  }
+}
@@ -0,0 +1,638 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.services.cloudadventure.model.Coordinates;
+import com.google.api.services.cloudadventure.model.Creature;
+import com.google.api.services.cloudadventure.model.Maze;
+import com.google.api.services.cloudadventure.model.Pickup;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.Tile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact, versioned binary format for a {@link Player} and everything it holds: its
+ * {@link Maze}, {@link Tile}s, {@link Creature}s, {@link Pickup}s and {@link Coordinates}.
+ * <p>
+ * Every stream starts with a magic number and a format version. Each record then starts with a
+ * bitmask of its numeric fields that are set, followed by those fields only. Numbers are written
+ * as zig-zag varints, and every string is written once and then referred to by its index, so the
+ * names and descriptions repeated across a maze cost a byte or two each after the first. Scalar
+ * fields of the models that this codec does not know about are written as tagged key/value pairs,
+ * so that they survive a round trip.
+ * <p>
+ * Both directions stream: records are written to and read from the underlying stream as they are
+ * visited, without building an intermediate buffer. The streams should be buffered.
+ */
+public class PlayerCodec {
+
+  /**
+   * The format version written by this codec.
+   */
+  public static final int VERSION = 1;
+
+  private static final int MAGIC = 0x43414450; // "CADP"
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final Set<String> PLAYER_FIELDS = fields("handle", "gameId", "orientation",
+      "currentHP", "maxHP", "gemsCollected", "mobsKilled", "numDeaths", "currentTile", "maze",
+      "pickups", "baseItems");
+  private static final Set<String> MAZE_FIELDS = fields("grid", "gemsRemaining",
+      "startingCoordinates");
+  private static final Set<String> TILE_FIELDS = fields("coord", "description", "openTo",
+      "creatures", "pickups");
+  private static final Set<String> CREATURE_FIELDS = fields("name", "description", "maxEffect",
+      "hitPoints");
+  private static final Set<String> PICKUP_FIELDS = fields("name", "description", "maxEffect",
+      "numUses");
+  private static final Set<String> COORDINATES_FIELDS = fields("x", "y");
+
+  /*
+   * Type tags of the extra scalar fields.
+   */
+  private static final int TAG_STRING = 1;
+  private static final int TAG_LONG = 2;
+  private static final int TAG_INTEGER = 3;
+  private static final int TAG_BOOLEAN = 4;
+  private static final int TAG_DOUBLE = 5;
+
+  private PlayerCodec() {}
+
+  /**
+   * Writes the player to the stream.
+   *
+   * @param player the {@link Player} to write
+   * @param out the stream to write to, which is left open
+   * @throws IOException if the stream cannot be written
+   */
+  public static void write(Player player, OutputStream out) throws IOException {
+    Encoder encoder = new Encoder(out);
+    encoder.writeHeader();
+    encoder.writePlayer(player);
+    out.flush();
+  }
+
+  /**
+   * Reads a player written by {@link #write(Player, OutputStream)}.
+   *
+   * @param in the stream to read from, which is left open
+   * @return {@link Player}
+   * @throws IOException if the stream cannot be read, is not in this format, or is in a version of
+   *         the format newer than {@link #VERSION}
+   */
+  public static Player read(InputStream in) throws IOException {
+    Decoder decoder = new Decoder(in);
+    decoder.readHeader();
+    return decoder.readPlayer();
+  }
+
+  private static Set<String> fields(String... names) {
+    return Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(names)));
+  }
+
+  private static class Encoder {
+    private final OutputStream out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    Encoder(OutputStream out) {
+      this.out = out;
+    }
+
+    void writeHeader() throws IOException {
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        out.write(MAGIC >>> shift);
+      }
+      writeVarint(VERSION);
+    }
+
+    void writePlayer(Player player) throws IOException {
+      if (!writePresence(player)) {
+        return;
+      }
+      writeMask(player.getCurrentHP(), player.getMaxHP(), player.getGemsCollected(),
+          player.getMobsKilled(), player.getNumDeaths());
+      writeString(player.getHandle());
+      writeString(player.getGameId());
+      writeString(player.getOrientation());
+      writeLong(player.getCurrentHP());
+      writeLong(player.getMaxHP());
+      writeLong(player.getGemsCollected());
+      writeLong(player.getMobsKilled());
+      writeLong(player.getNumDeaths());
+      writeTile(player.getCurrentTile());
+      writeMaze(player.getMaze());
+      writePickups(player.getPickups());
+      writePickups(player.getBaseItems());
+      writeExtras(player, PLAYER_FIELDS);
+    }
+
+    void writeMaze(Maze maze) throws IOException {
+      if (!writePresence(maze)) {
+        return;
+      }
+      List<List<Tile>> grid = maze.getGrid();
+      writeSize(grid);
+      if (grid != null) {
+        for (List<Tile> column : grid) {
+          writeSize(column);
+          if (column != null) {
+            for (Tile tile : column) {
+              writeTile(tile);
+            }
+          }
+        }
+      }
+      List<Coordinates> gems = maze.getGemsRemaining();
+      writeSize(gems);
+      if (gems != null) {
+        for (Coordinates coord : gems) {
+          writeCoordinates(coord);
+        }
+      }
+      writeCoordinates(maze.getStartingCoordinates());
+      writeExtras(maze, MAZE_FIELDS);
+    }
+
+    void writeTile(Tile tile) throws IOException {
+      if (!writePresence(tile)) {
+        return;
+      }
+      writeCoordinates(tile.getCoord());
+      writeString(tile.getDescription());
+      List<String> openTo = tile.getOpenTo();
+      writeSize(openTo);
+      if (openTo != null) {
+        for (String direction : openTo) {
+          writeString(direction);
+        }
+      }
+      List<Creature> creatures = tile.getCreatures();
+      writeSize(creatures);
+      if (creatures != null) {
+        for (Creature creature : creatures) {
+          writeCreature(creature);
+        }
+      }
+      writePickups(tile.getPickups());
+      writeExtras(tile, TILE_FIELDS);
+    }
+
+    void writeCreature(Creature creature) throws IOException {
+      if (!writePresence(creature)) {
+        return;
+      }
+      writeMask(creature.getMaxEffect(), creature.getHitPoints());
+      writeString(creature.getName());
+      writeString(creature.getDescription());
+      writeLong(creature.getMaxEffect());
+      writeLong(creature.getHitPoints());
+      writeExtras(creature, CREATURE_FIELDS);
+    }
+
+    void writePickups(List<Pickup> pickups) throws IOException {
+      writeSize(pickups);
+      if (pickups != null) {
+        for (Pickup pickup : pickups) {
+          writePickup(pickup);
+        }
+      }
+    }
+
+    void writePickup(Pickup pickup) throws IOException {
+      if (!writePresence(pickup)) {
+        return;
+      }
+      writeMask(pickup.getMaxEffect(), pickup.getNumUses());
+      writeString(pickup.getName());
+      writeString(pickup.getDescription());
+      writeLong(pickup.getMaxEffect());
+      writeLong(pickup.getNumUses());
+      writeExtras(pickup, PICKUP_FIELDS);
+    }
+
+    void writeCoordinates(Coordinates coord) throws IOException {
+      if (!writePresence(coord)) {
+        return;
+      }
+      writeMask(coord.getX(), coord.getY());
+      if (coord.getX() != null) {
+        writeSigned(coord.getX());
+      }
+      if (coord.getY() != null) {
+        writeSigned(coord.getY());
+      }
+      writeExtras(coord, COORDINATES_FIELDS);
+    }
+
+    /**
+     * Writes the scalar fields of the record that this codec does not know about.
+     */
+    void writeExtras(GenericJson record, Set<String> known) throws IOException {
+      List<Map.Entry<String, Object>> extras = null;
+      for (Map.Entry<String, Object> entry : record.entrySet()) {
+        Object value = entry.getValue();
+        if (!known.contains(entry.getKey())
+            && (value instanceof String || value instanceof Long || value instanceof Integer
+                || value instanceof Boolean || value instanceof Double)) {
+          if (extras == null) {
+            extras = new ArrayList<Map.Entry<String, Object>>();
+          }
+          extras.add(entry);
+        }
+      }
+      if (extras == null) {
+        writeVarint(0);
+        return;
+      }
+      writeVarint(extras.size());
+      for (Map.Entry<String, Object> entry : extras) {
+        writeString(entry.getKey());
+        Object value = entry.getValue();
+        if (value instanceof String) {
+          writeVarint(TAG_STRING);
+          writeString((String) value);
+        } else if (value instanceof Long) {
+          writeVarint(TAG_LONG);
+          writeSigned((Long) value);
+        } else if (value instanceof Integer) {
+          writeVarint(TAG_INTEGER);
+          writeSigned((Integer) value);
+        } else if (value instanceof Boolean) {
+          writeVarint(TAG_BOOLEAN);
+          writeVarint((Boolean) value ? 1 : 0);
+        } else {
+          writeVarint(TAG_DOUBLE);
+          long bits = Double.doubleToLongBits((Double) value);
+          for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (bits >>> shift));
+          }
+        }
+      }
+    }
+
+    /**
+     * Writes whether the record is there at all.
+     *
+     * @return {@code true} if the record is not {@code null}, and its fields must follow
+     */
+    boolean writePresence(Object record) throws IOException {
+      out.write(record == null ? 0 : 1);
+      return record != null;
+    }
+
+    /**
+     * Writes the bitmask of the given numbers that are not {@code null}, ahead of the numbers
+     * themselves.
+     */
+    void writeMask(Object... values) throws IOException {
+      int mask = 0;
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          mask |= 1 << i;
+        }
+      }
+      writeVarint(mask);
+    }
+
+    /**
+     * Writes the size of the list plus one, or zero for a {@code null} list.
+     */
+    void writeSize(List<?> list) throws IOException {
+      writeVarint(list == null ? 0 : list.size() + 1);
+    }
+
+    /**
+     * Writes a string as zero for {@code null}, one followed by its UTF-8 bytes the first time it
+     * is seen, or its index plus two after that.
+     */
+    void writeString(String value) throws IOException {
+      if (value == null) {
+        writeVarint(0);
+        return;
+      }
+      Integer index = strings.get(value);
+      if (index != null) {
+        writeVarint(index + 2);
+        return;
+      }
+      strings.put(value, strings.size());
+      byte[] bytes = value.getBytes(UTF_8);
+      writeVarint(1);
+      writeVarint(bytes.length);
+      out.write(bytes);
+    }
+
+    /**
+     * Writes a value that is flagged in the mask of its record, so nothing is written for
+     * {@code null}.
+     */
+    void writeLong(Long value) throws IOException {
+      if (value != null) {
+        writeSigned(value);
+      }
+    }
+
+    void writeSigned(long value) throws IOException {
+      writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeVarint(long value) throws IOException {
+      while ((value & ~0x7FL) != 0) {
+        out.write((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      out.write((int) value);
+    }
+  }
+
+  private static class Decoder {
+    private final InputStream in;
+    private final List<String> strings = new ArrayList<String>();
+
+    Decoder(InputStream in) {
+      this.in = in;
+    }
+
+    void readHeader() throws IOException {
+      int magic = 0;
+      for (int i = 0; i < 4; i++) {
+        magic = (magic << 8) | readByte();
+      }
+      if (magic != MAGIC) {
+        throw new IOException("Not a player stream");
+      }
+      int version = (int) readVarint();
+      if (version < 1 || version > VERSION) {
+        throw new IOException("Unsupported player stream version " + version);
+      }
+    }
+
+    Player readPlayer() throws IOException {
+      if (!readPresence()) {
+        return null;
+      }
+      Player player = new Player();
+      int mask = (int) readVarint();
+      player.setHandle(readString());
+      player.setGameId(readString());
+      player.setOrientation(readString());
+      player.setCurrentHP(readLong(mask, 0));
+      player.setMaxHP(readLong(mask, 1));
+      player.setGemsCollected(readLong(mask, 2));
+      player.setMobsKilled(readLong(mask, 3));
+      player.setNumDeaths(readLong(mask, 4));
+      player.setCurrentTile(readTile());
+      player.setMaze(readMaze());
+      player.setPickups(readPickups());
+      player.setBaseItems(readPickups());
+      readExtras(player);
+      return player;
+    }
+
+    Maze readMaze() throws IOException {
+      if (!readPresence()) {
+        return null;
+      }
+      Maze maze = new Maze();
+      int width = readSize();
+      if (width >= 0) {
+        List<List<Tile>> grid = new ArrayList<List<Tile>>(width);
+        for (int x = 0; x < width; x++) {
+          int height = readSize();
+          List<Tile> column = null;
+          if (height >= 0) {
+            column = new ArrayList<Tile>(height);
+            for (int y = 0; y < height; y++) {
+              column.add(readTile());
+            }
+          }
+          grid.add(column);
+        }
+        maze.setGrid(grid);
+      }
+      int gemCount = readSize();
+      if (gemCount >= 0) {
+        List<Coordinates> gems = new ArrayList<Coordinates>(gemCount);
+        for (int i = 0; i < gemCount; i++) {
+          gems.add(readCoordinates());
+        }
+        maze.setGemsRemaining(gems);
+      }
+      maze.setStartingCoordinates(readCoordinates());
+      readExtras(maze);
+      return maze;
+    }
+
+    Tile readTile() throws IOException {
+      if (!readPresence()) {
+        return null;
+      }
+      Tile tile = new Tile();
+      tile.setCoord(readCoordinates());
+      tile.setDescription(readString());
+      int openCount = readSize();
+      if (openCount >= 0) {
+        List<String> openTo = new ArrayList<String>(openCount);
+        for (int i = 0; i < openCount; i++) {
+          openTo.add(readString());
+        }
+        tile.setOpenTo(openTo);
+      }
+      int creatureCount = readSize();
+      if (creatureCount >= 0) {
+        List<Creature> creatures = new ArrayList<Creature>(creatureCount);
+        for (int i = 0; i < creatureCount; i++) {
+          creatures.add(readCreature());
+        }
+        tile.setCreatures(creatures);
+      }
+      tile.setPickups(readPickups());
+      readExtras(tile);
+      return tile;
+    }
+
+    Creature readCreature() throws IOException {
+      if (!readPresence()) {
+        return null;
+      }
+      Creature creature = new Creature();
+      int mask = (int) readVarint();
+      creature.setName(readString());
+      creature.setDescription(readString());
+      creature.setMaxEffect(readLong(mask, 0));
+      creature.setHitPoints(readLong(mask, 1));
+      readExtras(creature);
+      return creature;
+    }
+
+    List<Pickup> readPickups() throws IOException {
+      int count = readSize();
+      if (count < 0) {
+        return null;
+      }
+      List<Pickup> pickups = new ArrayList<Pickup>(count);
+      for (int i = 0; i < count; i++) {
+        pickups.add(readPickup());
+      }
+      return pickups;
+    }
+
+    Pickup readPickup() throws IOException {
+      if (!readPresence()) {
+        return null;
+      }
+      Pickup pickup = new Pickup();
+      int mask = (int) readVarint();
+      pickup.setName(readString());
+      pickup.setDescription(readString());
+      pickup.setMaxEffect(readLong(mask, 0));
+      pickup.setNumUses(readLong(mask, 1));
+      readExtras(pickup);
+      return pickup;
+    }
+
+    Coordinates readCoordinates() throws IOException {
+      if (!readPresence()) {
+        return null;
+      }
+      Coordinates coord = new Coordinates();
+      int mask = (int) readVarint();
+      if ((mask & 1) != 0) {
+        coord.setX((int) readSigned());
+      }
+      if ((mask & 2) != 0) {
+        coord.setY((int) readSigned());
+      }
+      readExtras(coord);
+      return coord;
+    }
+
+    void readExtras(GenericJson record) throws IOException {
+      int count = (int) readVarint();
+      for (int i = 0; i < count; i++) {
+        String key = readString();
+        int tag = (int) readVarint();
+        switch (tag) {
+          case TAG_STRING:
+            record.set(key, readString());
+            break;
+          case TAG_LONG:
+            record.set(key, readSigned());
+            break;
+          case TAG_INTEGER:
+            record.set(key, (int) readSigned());
+            break;
+          case TAG_BOOLEAN:
+            record.set(key, readVarint() != 0);
+            break;
+          case TAG_DOUBLE:
+            long bits = 0;
+            for (int b = 0; b < 8; b++) {
+              bits = (bits << 8) | readByte();
+            }
+            record.set(key, Double.longBitsToDouble(bits));
+            break;
+          default:
+            throw new IOException("Unknown field tag " + tag);
+        }
+      }
+    }
+
+    boolean readPresence() throws IOException {
+      return readByte() != 0;
+    }
+
+    /**
+     * Reads the size written by {@link Encoder#writeSize(List)}, or -1 for a {@code null} list.
+     */
+    int readSize() throws IOException {
+      return (int) readVarint() - 1;
+    }
+
+    String readString() throws IOException {
+      int ref = (int) readVarint();
+      if (ref == 0) {
+        return null;
+      }
+      if (ref > 1) {
+        if (ref - 2 >= strings.size()) {
+          throw new IOException("Unknown string reference " + ref);
+        }
+        return strings.get(ref - 2);
+      }
+      byte[] bytes = new byte[(int) readVarint()];
+      int read = 0;
+      while (read < bytes.length) {
+        int count = in.read(bytes, read, bytes.length - read);
+        if (count < 0) {
+          throw new EOFException();
+        }
+        read += count;
+      }
+      String value = new String(bytes, UTF_8);
+      strings.add(value);
+      return value;
+    }
+
+    /**
+     * Reads the number at the given position of a record's mask, or returns {@code null} if it is
+     * not set.
+     */
+    Long readLong(int mask, int bit) throws IOException {
+      return (mask & (1 << bit)) != 0 ? readSigned() : null;
+    }
+
+    long readSigned() throws IOException {
+      long value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint");
+    }
+
+    int readByte() throws IOException {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException();
+      }
+      return b;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import com.google.api.services.cloudadventure.model.Player;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * Keeps the last known state of each player, maze included, in a file per handle in the app's
+ * private storage, encoded with {@link PlayerCodec}, so that a game can be shown as soon as it is
+ * resumed and reconciled with the server afterwards.
+ * <p>
+ * The snapshot is only a cache: any failure to read or write it is logged and otherwise ignored.
+ * Writes go to a temporary file that replaces the snapshot once complete, so a crash mid-write
+ * leaves the previous snapshot intact.
+ */
+public class PlayerSnapshotStore {
+
+  private static final String TAG = "PlayerSnapshotStore";
+  private static final String DIRECTORY = "snapshots";
+  private static final String SUFFIX = ".snap";
+
+  private final File directory;
+
+  public PlayerSnapshotStore(Context context) {
+    directory = new File(context.getFilesDir(), DIRECTORY);
+  }
+
+  /**
+   * Reads the snapshot of the player with the given handle.
+   *
+   * @param handle the handle of the player
+   * @return the last written {@link Player}, or {@code null} if there is no readable snapshot
+   */
+  public Player read(String handle) {
+    File file = fileFor(handle);
+    if (file == null || !file.exists()) {
+      return null;
+    }
+    InputStream in = null;
+    try {
+      in = new BufferedInputStream(new FileInputStream(file));
+      return PlayerCodec.read(in);
+    } catch (IOException e) {
+      Log.w(TAG, "Discarding unreadable snapshot of " + handle, e);
+      file.delete();
+      return null;
+    } finally {
+      closeQuietly(in);
+    }
+  }
+
+  /**
+   * Replaces the snapshot of the given player. This does disk I/O, so it should not be called from
+   * the UI thread.
+   *
+   * @param player the player to save, keyed by its handle
+   */
+  public synchronized void write(Player player) {
+    File file = fileFor(player.getHandle());
+    if (file == null || (!directory.isDirectory() && !directory.mkdirs())) {
+      return;
+    }
+    File temp = new File(directory, file.getName() + ".tmp");
+    OutputStream out = null;
+    try {
+      out = new BufferedOutputStream(new FileOutputStream(temp));
+      PlayerCodec.write(player, out);
+      out.close();
+      out = null;
+      if (!temp.renameTo(file)) {
+        throw new IOException("Unable to rename " + temp);
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to write snapshot of " + player.getHandle(), e);
+      temp.delete();
+    } finally {
+      closeQuietly(out);
+    }
+  }
+
+  /**
+   * Deletes the snapshot of the player with the given handle, if there is one.
+   */
+  public synchronized void delete(String handle) {
+    File file = fileFor(handle);
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  private File fileFor(String handle) {
+    if (handle == null) {
+      return null;
+    }
+    try {
+      return new File(directory, URLEncoder.encode(handle, "UTF-8") + SUFFIX);
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // Ignored
+      }
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.json.CustomizeJsonParser;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.util.Data;
+import com.google.api.services.cloudadventure.model.Maze;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.Tile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a {@link Player} from an endpoint response one field at a time, instead of handing the
+ * whole payload to the JSON factory.
+ * <p>
+ * The player's current tile is handed to a {@link Listener} as soon as it has been read, without
+ * waiting for the rest of the response, and the maze grid is read one tile at a time straight
+ * into its columns. Every other field is parsed by the JSON factory as usual, so annotations and
+ * unknown keys, such as {@code error_message}, are handled the same as with
+ * {@code execute()}.
+ */
+public class PlayerStreamReader {
+
+  /**
+   * Receives parts of the player as they are read. Called on the thread doing the reading.
+   */
+  public interface Listener {
+    /**
+     * Called once the player's current tile has been read.
+     */
+    public void onCurrentTile(Tile tile);
+  }
+
+  private PlayerStreamReader() {}
+
+  /**
+   * Reads the player returned by an endpoint call as it streams in, counting its bytes in
+   * {@link EndpointStats}, and disconnects the response.
+   *
+   * @param jsonFactory the JSON factory of the endpoint service
+   * @param response the unparsed response of the call
+   * @param listener the listener to notify as parts of the player are read, or {@code null}
+   * @return {@link Player}, or {@code null} if the response is empty or {@code null}
+   * @throws IOException if the response cannot be read or parsed
+   */
+  public static Player read(JsonFactory jsonFactory, HttpResponse response, Listener listener)
+      throws IOException {
+    try {
+      return read(jsonFactory, EndpointStats.getContent(response), listener);
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  /**
+   * Reads a player from the stream, and closes it.
+   *
+   * @param jsonFactory the JSON factory of the endpoint service
+   * @param in the content of the response
+   * @param listener the listener to notify as parts of the player are read, or {@code null}
+   * @return {@link Player}, or {@code null} if the response is empty or {@code null}
+   * @throws IOException if the stream cannot be read or parsed
+   */
+  public static Player read(JsonFactory jsonFactory, InputStream in, Listener listener)
+      throws IOException {
+    JsonParser parser = jsonFactory.createJsonParser(in);
+    try {
+      if (parser.nextToken() == null) {
+        return null;
+      }
+      return read(parser, listener);
+    } finally {
+      parser.close();
+    }
+  }
+
+  /**
+   * Reads a player that is the value of a field of a larger response. The parser must be on the
+   * start of the player, and is left on its end.
+   *
+   * @param parser the parser of the response
+   * @param listener the listener to notify as parts of the player are read, or {@code null}
+   * @return {@link Player}, or {@code null} if the value is {@code null}
+   * @throws IOException if the stream cannot be read or parsed
+   */
+  public static Player read(JsonParser parser, Listener listener) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    Player player = new Player();
+    StopAtKeys stops = new StopAtKeys(player, "currentTile", "maze");
+    parser.parse(player, stops);
+    while (stops.stoppedAt != null) {
+      String key = stops.stoppedAt;
+      stops.stoppedAt = null;
+      if ("currentTile".equals(key)) {
+        Tile tile = readTile(parser);
+        player.setCurrentTile(tile);
+        if (tile != null && listener != null) {
+          listener.onCurrentTile(tile);
+        }
+      } else {
+        player.setMaze(readMaze(parser));
+      }
+      // Move past the value just read and carry on with the rest of the player
+      parser.nextToken();
+      parser.parse(player, stops);
+    }
+    return player;
+  }
+
+  private static Maze readMaze(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    Maze maze = new Maze();
+    StopAtKeys stops = new StopAtKeys(maze, "grid");
+    parser.parse(maze, stops);
+    while (stops.stoppedAt != null) {
+      stops.stoppedAt = null;
+      maze.setGrid(readGrid(parser));
+      parser.nextToken();
+      parser.parse(maze, stops);
+    }
+    return maze;
+  }
+
+  private static List<List<Tile>> readGrid(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    List<List<Tile>> grid = new ArrayList<List<Tile>>();
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      if (token == JsonToken.VALUE_NULL) {
+        grid.add(null);
+        continue;
+      }
+      List<Tile> column = new ArrayList<Tile>();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        column.add(readTile(parser));
+      }
+      grid.add(column);
+    }
+    return grid;
+  }
+
+  private static Tile readTile(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    Tile tile = parser.parse(Tile.class);
+    return Data.isNull(tile) ? null : tile;
+  }
+
+  /**
+   * Stops the JSON factory at the given keys of the target object, leaving the parser on their
+   * values, and remembers which key it stopped at.
+   */
+  private static class StopAtKeys extends CustomizeJsonParser {
+    private final Object target;
+    private final Set<String> keys;
+    String stoppedAt;
+
+    StopAtKeys(Object target, String... keys) {
+      this.target = target;
+      this.keys = new HashSet<String>(Arrays.asList(keys));
+    }
+
+    @Override
+    public boolean stopAt(Object context, String key) {
+      if (context == target && keys.contains(key)) {
+        stoppedAt = key;
+        return true;
+      }
+      return false;
+    }
+  }
+}
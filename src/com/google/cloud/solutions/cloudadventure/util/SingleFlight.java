@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.util;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.util.GenericData;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Lets concurrent identical endpoint reads share a single HTTP request.
+ * <p>
+ * Requests are identified by their method, URL and {@code If-None-Match} header, so for instance
+ * two {@code users.getByHandle} calls for the same handle made while the first is still in flight
+ * result in one round trip. The first caller executes the request on its own thread; the others
+ * wait for it. Every caller, the first included, gets its own copy of the result, or the same
+ * exception. Requests with a body are never shared and are simply executed, as are requests made
+ * once the first call has completed.
+ */
+public class SingleFlight {
+
+  private static final String TAG = "SingleFlight";
+
+  private static final ConcurrentMap<String, FutureTask<?>> inFlight =
+      new ConcurrentHashMap<String, FutureTask<?>>();
+
+  private SingleFlight() {}
+
+  /**
+   * Executes the request, or waits for an identical request that is already in flight.
+   *
+   * @param request a request that only reads from the endpoint
+   * @return the parsed response
+   * @throws IOException if the request, or the identical request it waited for, failed
+   */
+  public static <T> T execute(final AbstractGoogleClientRequest<T> request) throws IOException {
+    if (request.getHttpContent() != null) {
+      return request.execute();
+    }
+    String key = EndpointStats.getMethodName(request) + " " + request.buildHttpRequestUrl().build()
+        + " " + request.getRequestHeaders().getIfNoneMatch();
+    FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+      @Override
+      public T call() throws IOException {
+        return request.execute();
+      }
+    });
+    @SuppressWarnings("unchecked")
+    FutureTask<T> leader = (FutureTask<T>) inFlight.putIfAbsent(key, task);
+    if (leader == null) {
+      try {
+        task.run();
+      } finally {
+        inFlight.remove(key, task);
+      }
+      // Followers may still be copying the result, so the leader gets a copy as well
+      return copy(getResult(task));
+    }
+    Log.d(TAG, "Sharing the response of " + key);
+    return copy(getResult(leader));
+  }
+
+  private static <T> T getResult(FutureTask<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a shared response");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Copies a shared response, so that callers are free to modify the one they get while the
+   * result itself stays unchanged.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T copy(T result) {
+    if (result instanceof GenericData) {
+      return (T) ((GenericData) result).clone();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.widget;
+
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.cloud.solutions.cloudadventure.R;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This adapter lists end-game player scores, one row per player handle. Rows are looked up by
+ * handle through a map, and row views are recycled through a view holder.
+ * 
+ */
+public class PlayerScoresAdapter extends BaseAdapter {
+
+  private final List<Player> mPlayers = new ArrayList<Player>();
+  private final Map<String, Integer> mPositions = new HashMap<String, Integer>();
+  private LayoutInflater mInflater;
+
+  public PlayerScoresAdapter(Context context) {
+    mInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+  }
+
+  /**
+   * Holds the views of one row, so that recycled rows do not need to look their views up again.
+   */
+  public static class ViewHolder {
+    private TextView handle;
+    private TextView gems;
+    private TextView mobsKilled;
+    private TextView deaths;
+  }
+
+  public boolean contains(String handle) {
+    return mPositions.containsKey(handle);
+  }
+
+  /**
+   * Returns the row position of the player with the given handle, or -1 if there is none.
+   */
+  public int getPosition(String handle) {
+    Integer position = mPositions.get(handle);
+    return position == null ? -1 : position;
+  }
+
+  /**
+   * Adds the scores of a player, or replaces them if the player already has a row. This does not
+   * notify the adapter's observers.
+   * 
+   * @param player the player whose scores have been updated
+   * @return {@code true} if a new row was added
+   */
+  public boolean put(Player player) {
+    Integer position = mPositions.get(player.getHandle());
+    if (position != null) {
+      mPlayers.set(position, player);
+      return false;
+    }
+    mPositions.put(player.getHandle(), mPlayers.size());
+    mPlayers.add(player);
+    return true;
+  }
+
+  @Override
+  public int getCount() {
+    return mPlayers.size();
+  }
+
+  @Override
+  public Player getItem(int position) {
+    return mPlayers.get(position);
+  }
+
+  @Override
+  public long getItemId(int position) {
+    return position;
+  }
+
+  @Override
+  public boolean hasStableIds() {
+    return true;
+  }
+
+  @Override
+  public View getView(int position, View convertView, ViewGroup parent) {
+    View view = convertView;
+    if (view == null) {
+      view = mInflater.inflate(R.layout.list_item_player_score, parent, false);
+      ViewHolder holder = new ViewHolder();
+      holder.handle = (TextView) view.findViewById(R.id.player_score_handle);
+      holder.gems = (TextView) view.findViewById(R.id.player_score_gems);
+      holder.mobsKilled = (TextView) view.findViewById(R.id.player_score_mobs_killed);
+      holder.deaths = (TextView) view.findViewById(R.id.player_score_deaths);
+      view.setTag(holder);
+    }
+    bindView(view, mPlayers.get(position));
+    return view;
+  }
+
+  /**
+   * Sets the scores of the player onto a row view previously returned by
+   * {@link #getView(int, View, ViewGroup)}.
+   */
+  public void bindView(View view, Player player) {
+    ViewHolder holder = (ViewHolder) view.getTag();
+    holder.handle.setText(player.getHandle());
+    holder.gems.setText(Long.toString(player.getGemsCollected()));
+    holder.mobsKilled.setText(Long.toString(player.getMobsKilled()));
+    holder.deaths.setText(Long.toString(player.getNumDeaths()));
+  }
+}
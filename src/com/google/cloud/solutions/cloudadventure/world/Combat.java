@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.world;
+
+/**
+ * The rules of a battle between the player and a hostile creature.
+ */
+public class Combat {
+
+  private Combat() {}
+
+  /**
+   * Fights a battle to the end. The player strikes first, then the player and the creature trade
+   * blows until one of them is out of hit points.
+   * <p>
+   * The outcome is computed from the number of exchanges each side needs to finish the other,
+   * rather than by playing every exchange out, so a weak weapon against a strong creature costs no
+   * more than any other fight. If neither side can harm the other the battle never ends, and the
+   * player's hit points are returned unchanged.
+   *
+   * @param playerHp the player's hit points before the battle
+   * @param creatureHp the creature's hit points before the battle
+   * @param weaponEffect the effect of the player's weapon on the creature's hit points, negative
+   * @param creatureEffect the effect of the creature on the player's hit points, negative
+   * @return the player's hit points after the battle; the player has won if they are positive
+   */
+  public static long resolveBattle(long playerHp, long creatureHp, long weaponEffect,
+      long creatureEffect) {
+    creatureHp = creatureHp + weaponEffect; // player hits first
+    if (playerHp <= 0 || creatureHp <= 0) {
+      return playerHp;
+    }
+    // Both sides strike in every exchange, so the battle lasts until the first of them goes down
+    long exchanges = Long.MAX_VALUE;
+    if (weaponEffect < 0) {
+      exchanges = exchangesToFinish(creatureHp, -weaponEffect);
+    }
+    if (creatureEffect < 0) {
+      exchanges = Math.min(exchanges, exchangesToFinish(playerHp, -creatureEffect));
+    }
+    if (exchanges == Long.MAX_VALUE) {
+      return playerHp;
+    }
+    return playerHp + exchanges * creatureEffect;
+  }
+
+  /**
+   * Returns the number of blows of the given damage needed to bring the hit points to zero or less.
+   */
+  private static long exchangesToFinish(long hp, long damage) {
+    return (hp - 1) / damage + 1;
+  }
+}
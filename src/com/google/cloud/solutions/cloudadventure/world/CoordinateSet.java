@@ -0,0 +1,211 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.world;
+
+import com.google.api.services.cloudadventure.model.Coordinates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A hash set of maze coordinates. Each (x, y) pair is packed into a single {@code long} key and
+ * stored in an open-addressing table, so membership checks, removals and the count are constant
+ * time and allocation-free.
+ * <p>
+ * This is used to mirror lists of {@link Coordinates} from the generated model, such as the gems
+ * remaining in a maze, which otherwise need a linear scan for every lookup.
+ */
+public class CoordinateSet {
+
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  private long[] keys;
+  private int mask;
+  private int size;
+
+  public CoordinateSet(int expectedSize) {
+    int capacity = 8;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  /**
+   * Builds a set from a list of {@link Coordinates}.
+   *
+   * @param coords the coordinates to add, or {@code null} for none
+   * @return {@link CoordinateSet}
+   */
+  public static CoordinateSet from(List<Coordinates> coords) {
+    if (coords == null) {
+      return new CoordinateSet(0);
+    }
+    CoordinateSet set = new CoordinateSet(coords.size());
+    for (Coordinates coord : coords) {
+      set.add(coord.getX(), coord.getY());
+    }
+    return set;
+  }
+
+  /**
+   * Packs a pair of coordinates into a single key.
+   */
+  public static long pack(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+
+  public static int unpackX(long key) {
+    return (int) (key >> 32);
+  }
+
+  public static int unpackY(long key) {
+    return (int) key;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int x, int y) {
+    return keys[find(pack(x, y))] != EMPTY;
+  }
+
+  public boolean contains(Coordinates coord) {
+    return contains(coord.getX(), coord.getY());
+  }
+
+  /**
+   * Adds the coordinates to this set.
+   *
+   * @return {@code true} if the coordinates were not already in the set
+   */
+  public boolean add(int x, int y) {
+    long key = pack(x, y);
+    int slot = find(key);
+    if (keys[slot] != EMPTY) {
+      return false;
+    }
+    keys[slot] = key;
+    if (++size * 2 > keys.length) {
+      rehash(keys.length << 1);
+    }
+    return true;
+  }
+
+  /**
+   * Removes the coordinates from this set.
+   *
+   * @return {@code true} if the coordinates were in the set
+   */
+  public boolean remove(int x, int y) {
+    int slot = find(pack(x, y));
+    if (keys[slot] == EMPTY) {
+      return false;
+    }
+    keys[slot] = EMPTY;
+    size--;
+
+    // Shift back any following entries of the same probe run into the freed slot
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      long key = keys[next];
+      if (key == EMPTY) {
+        break;
+      }
+      int home = hash(key);
+      boolean homeBetween = slot <= next
+          ? (home > slot && home <= next)
+          : (home > slot || home <= next);
+      if (!homeBetween) {
+        keys[slot] = key;
+        keys[next] = EMPTY;
+        slot = next;
+      }
+    }
+    return true;
+  }
+
+  public boolean remove(Coordinates coord) {
+    return remove(coord.getX(), coord.getY());
+  }
+
+  /**
+   * Returns the packed keys of all coordinates in this set, in no particular order.
+   */
+  public long[] toKeys() {
+    long[] result = new long[size];
+    int i = 0;
+    for (long key : keys) {
+      if (key != EMPTY) {
+        result[i++] = key;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the contents of this set as a new list of {@link Coordinates}, in no particular order.
+   */
+  public List<Coordinates> toCoordinates() {
+    List<Coordinates> result = new ArrayList<Coordinates>(size);
+    for (long key : keys) {
+      if (key != EMPTY) {
+        result.add(new Coordinates().setX(unpackX(key)).setY(unpackY(key)));
+      }
+    }
+    return result;
+  }
+
+  private int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  /**
+   * Returns the slot holding the key, or the empty slot where it would be inserted.
+   */
+  private int find(long key) {
+    int slot = hash(key);
+    while (keys[slot] != EMPTY && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY);
+    mask = capacity - 1;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    allocate(capacity);
+    for (long key : oldKeys) {
+      if (key != EMPTY) {
+        keys[find(key)] = key;
+      }
+    }
+  }
+}
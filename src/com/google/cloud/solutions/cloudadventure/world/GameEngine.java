@@ -0,0 +1,429 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.world;
+
+import com.google.api.services.cloudadventure.model.Creature;
+import com.google.api.services.cloudadventure.model.Pickup;
+import com.google.api.services.cloudadventure.model.Player;
+import com.google.api.services.cloudadventure.model.Tile;
+import com.google.cloud.solutions.cloudadventure.world.MapUtils.Cardinal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rules of the game, applied to one {@link Player} in its maze.
+ * <p>
+ * The engine owns the player's state while a game is played: every action updates the player,
+ * records what changed in a {@link PlayerChanges}, and returns a {@link Result} describing what
+ * happened, for the caller to render. It does not depend on the Android framework, so the rules
+ * can also be driven from plain JVM code such as benchmarks and bots.
+ */
+public class GameEngine {
+
+  /**
+   * What an action led to.
+   */
+  public enum Outcome {
+    /**
+     * The player moved to the next tile.
+     */
+    MOVED,
+    /**
+     * The player attacked a friendly creature with a weapon, and killed it.
+     */
+    FRIENDLY_CREATURE_KILLED,
+    /**
+     * The player threw something that is not a weapon at a friendly creature, which left.
+     */
+    FRIENDLY_CREATURE_LEFT,
+    /**
+     * The player fought a hostile creature with a weapon, and won.
+     */
+    HOSTILE_CREATURE_DEFEATED,
+    /**
+     * The player threw something that is not a weapon at a hostile creature, which hit back by
+     * {@link Result#getAmount()}. The thrown item is lost.
+     */
+    HOSTILE_CREATURE_UNHARMED,
+    /**
+     * The player attacked a pickup.
+     */
+    PICKUP_ATTACKED,
+    /**
+     * The player lost {@link Result#getAmount()} hit points, as a negative amount, and survived.
+     */
+    HURT,
+    /**
+     * The player gained {@link Result#getAmount()} hit points.
+     */
+    HEALED,
+    /**
+     * Nothing happened.
+     */
+    NO_EFFECT,
+    /**
+     * The player picked up a gem.
+     */
+    GEM_TAKEN,
+    /**
+     * The player picked up a pickup that is not a gem.
+     */
+    PICKUP_TAKEN,
+    /**
+     * The player ran out of hit points, and must {@link GameEngine#respawn()}.
+     */
+    PLAYER_DIED
+  }
+
+  /**
+   * The result of an action.
+   */
+  public static class Result {
+    private final Outcome outcome;
+    private final long amount;
+    private final boolean weaponBroken;
+    private final boolean tileChanged;
+
+    Result(Outcome outcome, long amount, boolean weaponBroken, boolean tileChanged) {
+      this.outcome = outcome;
+      this.amount = amount;
+      this.weaponBroken = weaponBroken;
+      this.tileChanged = tileChanged;
+    }
+
+    public Outcome getOutcome() {
+      return outcome;
+    }
+
+    /**
+     * Returns the change in the player's hit points, for {@link Outcome#HURT},
+     * {@link Outcome#HEALED} and {@link Outcome#HOSTILE_CREATURE_UNHARMED}.
+     */
+    public long getAmount() {
+      return amount;
+    }
+
+    /**
+     * Returns whether the weapon used in a fight reached the end of its uses, and is gone.
+     */
+    public boolean isWeaponBroken() {
+      return weaponBroken;
+    }
+
+    /**
+     * Returns whether the player is on a different tile, or the creatures and pickups on the
+     * current tile have changed.
+     */
+    public boolean isTileChanged() {
+      return tileChanged;
+    }
+  }
+
+  private final Player player;
+  private final MazeIndex maze;
+  private final CoordinateSet gemsRemaining;
+  private final PlayerChanges changes;
+  private int currentTileIndex;
+
+  /**
+   * @param player the player, whose current tile must be a tile of its maze
+   * @param maze the {@link MazeIndex} of the player's maze
+   * @param changes where to record the changes made to the player
+   */
+  public GameEngine(Player player, MazeIndex maze, PlayerChanges changes) {
+    this.player = player;
+    this.maze = maze;
+    this.changes = changes;
+    gemsRemaining = CoordinateSet.from(player.getMaze().getGemsRemaining());
+    currentTileIndex = maze.indexOf(player.getCurrentTile());
+    if (player.getPickups() == null) {
+      player.setPickups(new ArrayList<Pickup>());
+    }
+    if (player.getBaseItems() == null) {
+      player.setBaseItems(new ArrayList<Pickup>());
+    }
+  }
+
+  public Player getPlayer() {
+    return player;
+  }
+
+  public MazeIndex getMazeIndex() {
+    return maze;
+  }
+
+  public CoordinateSet getGemsRemaining() {
+    return gemsRemaining;
+  }
+
+  public int getCurrentTileIndex() {
+    return currentTileIndex;
+  }
+
+  /**
+   * Returns the openings bitmask of the player's current tile, as returned by
+   * {@link MazeIndex#getOpenings(int)}.
+   */
+  public int getCurrentOpenings() {
+    return maze.getOpenings(currentTileIndex);
+  }
+
+  /**
+   * Returns whether the player has completed the map objectives.
+   */
+  public boolean isGameOver() {
+    return gemsRemaining.isEmpty();
+  }
+
+  /**
+   * Copies the gems remaining back into the player's maze, so that the player can be saved.
+   */
+  public void syncGemsRemaining() {
+    player.getMaze().setGemsRemaining(gemsRemaining.toCoordinates());
+  }
+
+  /**
+   * Is this {@link Pickup} item a gem?
+   */
+  public static boolean isGem(Pickup pickup) {
+    return "gem".equalsIgnoreCase(pickup.getName());
+  }
+
+  /**
+   * Returns whether any of the creatures on the tile are hostile.
+   */
+  public static boolean hasHostileCreature(Tile tile) {
+    List<Creature> creatures = tile.getCreatures();
+    if (creatures != null) {
+      for (Creature creature : creatures) {
+        if (creature.getMaxEffect() < 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Moves the player to the next tile in the given direction, and turns them to face it.
+   */
+  public Result move(Cardinal direction) {
+    currentTileIndex = MapUtils.getNextTile(maze, currentTileIndex, direction);
+    player.setOrientation(direction.toString());
+    player.setCurrentTile(maze.getTile(currentTileIndex));
+    changes.mark(PlayerChanges.POSITION);
+    return new Result(Outcome.MOVED, 0, false, true);
+  }
+
+  /**
+   * Attacks a creature or a pickup on the current tile with one of the player's pickups. Every
+   * attack uses up one use of the weapon.
+   *
+   * @param attackee the {@link Creature} or {@link Pickup} to attack
+   * @param weapon the {@link Pickup} to attack with
+   * @return {@link Result}, or {@code null} if the attackee is neither a creature nor a pickup
+   */
+  public Result fight(Object attackee, Pickup weapon) {
+    if (attackee instanceof Creature) {
+      Creature creature = (Creature) attackee;
+      changes.mark(PlayerChanges.HIT_POINTS | PlayerChanges.INVENTORY | PlayerChanges.MAZE
+          | PlayerChanges.STATS);
+
+      long encounterableEffect = creature.getMaxEffect();
+      long encounterableHp = creature.getHitPoints();
+      weapon.setNumUses(weapon.getNumUses() - 1);
+
+      Outcome outcome;
+      long amount = 0;
+      boolean tileChanged = false;
+      if (encounterableEffect >= 0) {
+        // You attack a good guy...
+        removeCreature(creature);
+        tileChanged = true;
+        outcome = weapon.getMaxEffect() < 0
+            ? Outcome.FRIENDLY_CREATURE_KILLED : Outcome.FRIENDLY_CREATURE_LEFT;
+      } else if (weapon.getMaxEffect() < 0) {
+        // You attack a bad guy with a weapon
+        player.setCurrentHP(Combat.resolveBattle(player.getCurrentHP(), encounterableHp,
+            weapon.getMaxEffect(), encounterableEffect));
+        if (player.getCurrentHP() <= 0) {
+          return died();
+        }
+        player.setMobsKilled(player.getMobsKilled() + 1);
+        removeCreature(creature);
+        tileChanged = true;
+        outcome = Outcome.HOSTILE_CREATURE_DEFEATED;
+      } else {
+        // You attack a bad guy with something that is not a weapon
+        player.setCurrentHP(player.getCurrentHP() + encounterableEffect);
+        if (player.getCurrentHP() <= 0) {
+          return died();
+        }
+        player.getPickups().remove(weapon);
+        outcome = Outcome.HOSTILE_CREATURE_UNHARMED;
+        amount = encounterableEffect;
+      }
+      return new Result(outcome, amount, wearWeapon(weapon), tileChanged);
+    } else if (attackee instanceof Pickup) {
+      changes.mark(PlayerChanges.INVENTORY);
+      weapon.setNumUses(weapon.getNumUses() - 1);
+      return new Result(Outcome.PICKUP_ATTACKED, 0, wearWeapon(weapon), false);
+    }
+    return null;
+  }
+
+  /**
+   * Talks to a creature or a pickup on the current tile. Friendly creatures heal the player and
+   * leave; hostile ones hit them.
+   *
+   * @param talkee the {@link Creature} or {@link Pickup} to talk to
+   * @return {@link Result}, or {@code null} if the talkee is neither a creature nor a pickup
+   */
+  public Result talkTo(Object talkee) {
+    if (talkee instanceof Creature) {
+      Creature creature = (Creature) talkee;
+
+      // Set the effect that the creature has on the player
+      changes.mark(PlayerChanges.HIT_POINTS | PlayerChanges.MAZE);
+      long creatureEffect = creature.getMaxEffect();
+      long effectiveCreatureEffect = Math.min(creature.getMaxEffect(),
+          player.getMaxHP() - player.getCurrentHP());
+      player.setCurrentHP(player.getCurrentHP() + effectiveCreatureEffect);
+
+      if (creatureEffect < 0) {
+        if (player.getCurrentHP() <= 0) {
+          return died();
+        }
+        return new Result(Outcome.HURT, effectiveCreatureEffect, false, false);
+      }
+      removeCreature(creature);
+      return new Result(Outcome.HEALED, effectiveCreatureEffect, false, true);
+    } else if (talkee instanceof Pickup) {
+      return new Result(Outcome.NO_EFFECT, 0, false, false);
+    }
+    return null;
+  }
+
+  /**
+   * Tries to pick up a creature or a pickup on the current tile. Pickups go to the player's
+   * inventory; hostile creatures hit the player, and friendly ones are left alone.
+   *
+   * @param takee the {@link Creature} or {@link Pickup} to pick up
+   * @return {@link Result}, or {@code null} if the takee is neither a creature nor a pickup
+   */
+  public Result take(Object takee) {
+    if (takee instanceof Creature) {
+      Creature creature = (Creature) takee;
+
+      changes.mark(PlayerChanges.HIT_POINTS);
+      long creatureEffect = creature.getMaxEffect();
+      player.setCurrentHP(player.getCurrentHP() + creatureEffect);
+      if (creatureEffect < 0) {
+        // Player tries to pick up a "bad guy"
+        if (player.getCurrentHP() <= 0) {
+          return died();
+        }
+        return new Result(Outcome.HURT, creatureEffect, false, false);
+      }
+      // Player tries to pick up a "good guy"
+      return new Result(Outcome.NO_EFFECT, 0, false, false);
+    } else if (takee instanceof Pickup) {
+      Pickup pickup = (Pickup) takee;
+
+      changes.mark(PlayerChanges.INVENTORY | PlayerChanges.MAZE | PlayerChanges.STATS);
+      player.getPickups().add(pickup);
+      player.getCurrentTile().getPickups().remove(pickup);
+      changes.markTile(currentTileIndex);
+      if (isGem(pickup)) {
+        gemsRemaining.remove(player.getCurrentTile().getCoord());
+        changes.markGemRemoved(currentTileIndex);
+        player.setGemsCollected(player.getGemsCollected() + 1);
+        return new Result(Outcome.GEM_TAKEN, 0, false, true);
+      }
+      return new Result(Outcome.PICKUP_TAKEN, 0, false, true);
+    }
+    return null;
+  }
+
+  /**
+   * Consumes one of the player's pickups. Healing items heal the player, up to their max hit
+   * points, and are used up; weapons hurt them.
+   *
+   * @param consumee the {@link Pickup} to consume
+   * @return {@link Result}
+   */
+  public Result consume(Pickup consumee) {
+    changes.mark(PlayerChanges.HIT_POINTS | PlayerChanges.INVENTORY);
+    long pickupEffect = consumee.getMaxEffect();
+    long effectivePickupEffect = Math.min(consumee.getMaxEffect(),
+        player.getMaxHP() - player.getCurrentHP());
+    player.setCurrentHP(player.getCurrentHP() + effectivePickupEffect);
+    if (pickupEffect < 0) {
+      // Player tries to consume a weapon
+      if (player.getCurrentHP() <= 0) {
+        return died();
+      }
+      return new Result(Outcome.HURT, effectivePickupEffect, false, false);
+    } else if (pickupEffect > 0) {
+      // Player consumes a healing item
+      player.getPickups().remove(consumee);
+      return new Result(Outcome.HEALED, effectivePickupEffect, false, false);
+    }
+    // Player tries to consume something with zero effect
+    return new Result(Outcome.NO_EFFECT, 0, false, false);
+  }
+
+  /**
+   * Resets a player who has died to the start of the maze, with full hit points and their
+   * original base items. Gems already collected are lost.
+   */
+  public void respawn() {
+    changes.mark(PlayerChanges.ALL);
+    player.setPickups(new ArrayList<Pickup>(player.getBaseItems()));
+    player.setGemsCollected(0L);
+    player.setNumDeaths(player.getNumDeaths() + 1);
+    player.setCurrentHP(player.getMaxHP());
+
+    currentTileIndex = maze.getStartIndex();
+    Tile startTile = maze.getTile(currentTileIndex);
+    player.setCurrentTile(startTile);
+    player.setOrientation(startTile.getOpenTo().get(0));
+  }
+
+  private Result died() {
+    return new Result(Outcome.PLAYER_DIED, 0, false, false);
+  }
+
+  private void removeCreature(Creature creature) {
+    player.getCurrentTile().getCreatures().remove(creature);
+    changes.markTile(currentTileIndex);
+  }
+
+  /**
+   * Removes the weapon from the player's pickups if it has no uses left.
+   *
+   * @return whether the weapon broke
+   */
+  private boolean wearWeapon(Pickup weapon) {
+    if (weapon.getNumUses() > 0) {
+      return false;
+    }
+    player.getPickups().remove(weapon);
+    return true;
+  }
+}
@@ -16,6 +16,8 @@
 
 package com.google.cloud.solutions.cloudadventure.world;
 
+import com.google.api.services.cloudadventure.model.Creature;
+import com.google.api.services.cloudadventure.model.Pickup;
 import com.google.api.services.cloudadventure.model.Player;
 import com.google.api.services.cloudadventure.model.Tile;
 
@@ -44,93 +46,148 @@ public class MapUtils {
    * {@link Player} in the game, and is updated each time the player moves and changes direction.
    */
   public static class DirectionMapper {
-    private Cardinal[] cardinalDirections = Cardinal.values();
+    /*
+     * Bits of a relative openings bitmask, as returned by getRelativeOpenings().
+     */
+    public static final int FRONT = 1;
+    public static final int RIGHT = 1 << 1;
+    public static final int BEHIND = 1 << 2;
+    public static final int LEFT = 1 << 3;
 
-    private Cardinal forward = Cardinal.NORTH;
-    private Cardinal right = Cardinal.EAST;
-    private Cardinal back = Cardinal.SOUTH;
-    private Cardinal left = Cardinal.WEST;
+    private static final Cardinal[] cardinalDirections = Cardinal.values();
+
+    private int forward = Cardinal.NORTH.ordinal();
 
     public DirectionMapper(final Cardinal initialFacing) {
-      switch (initialFacing) {
-        case NORTH:
-          break;
-        case EAST:
-          turnRight();
-          break;
-        case SOUTH:
-          turnAround();
-          break;
-        case WEST:
-          turnLeft();
-          break;
-      }
+      forward = initialFacing.ordinal();
     }
 
     public Cardinal getFrontCardinal() {
-      return forward;
+      return cardinalDirections[forward];
     }
 
     public Cardinal getRightCardinal() {
-      return right;
+      return cardinalDirections[(forward + 1) & 3];
     }
 
     public Cardinal getBehindCardinal() {
-      return back;
+      return cardinalDirections[(forward + 2) & 3];
     }
 
     public Cardinal getLeftCardinal() {
-      return left;
+      return cardinalDirections[(forward + 3) & 3];
     }
 
     public void turnRight() {
-      forward = cardinalDirections[(forward.ordinal() + 1 + 4) % 4];
-      right = cardinalDirections[(right.ordinal() + 1 + 4) % 4];
-      back = cardinalDirections[(back.ordinal() + 1 + 4) % 4];
-      left = cardinalDirections[(left.ordinal() + 1 + 4) % 4];
+      forward = (forward + 1) & 3;
     }
 
     public void turnAround() {
-      forward = cardinalDirections[(forward.ordinal() + 2 + 4) % 4];
-      right = cardinalDirections[(right.ordinal() + 2 + 4) % 4];
-      back = cardinalDirections[(back.ordinal() + 2 + 4) % 4];
-      left = cardinalDirections[(left.ordinal() + 2 + 4) % 4];
+      forward = (forward + 2) & 3;
     }
 
     public void turnLeft() {
-      forward = cardinalDirections[(forward.ordinal() - 1 + 4) % 4];
-      right = cardinalDirections[(right.ordinal() - 1 + 4) % 4];
-      back = cardinalDirections[(back.ordinal() - 1 + 4) % 4];
-      left = cardinalDirections[(left.ordinal() - 1 + 4) % 4];
+      forward = (forward + 3) & 3;
+    }
+
+    /**
+     * Rotates a cardinal openings bitmask, as returned by {@link MapUtils#getOpenings(Tile)}, into
+     * a bitmask relative to the current facing, made of the {@link #FRONT}, {@link #RIGHT},
+     * {@link #BEHIND} and {@link #LEFT} bits.
+     *
+     * @param openings a cardinal openings bitmask
+     * @return the relative openings bitmask
+     */
+    public int getRelativeOpenings(int openings) {
+      return ((openings >>> forward) | (openings << (4 - forward))) & 0xF;
+    }
+  }
+
+  /**
+   * Returns the bit for the given cardinal direction in an openings bitmask.
+   *
+   * @param direction a cardinal direction
+   * @return the bitmask with only the bit for {@code direction} set
+   */
+  public static int bit(Cardinal direction) {
+    return 1 << direction.ordinal();
+  }
+
+  /**
+   * Decodes the directions that a {@link Tile} is open to into a bitmask, with one bit set per
+   * open {@link Cardinal}, at the position of its ordinal.
+   *
+   * @param tile a {@link Tile}
+   * @return the openings bitmask of the tile
+   */
+  public static int getOpenings(Tile tile) {
+    int openings = 0;
+    List<String> openTo = tile.getOpenTo();
+    if (openTo != null) {
+      for (String direction : openTo) {
+        openings |= bit(Cardinal.valueOf(direction));
+      }
     }
+    return openings;
   }
 
   /**
-   * Given a {@link Player} and cardinal direction, finds the next {@link Tile} in that direction.
-   * 
-   * @param player a {@link Player} with a current {@link Tile} location
+   * Given the index of a {@link Player}'s current {@link Tile} and a cardinal direction, finds the
+   * index of the next {@link Tile} in that direction.
+   *
+   * @param maze the {@link MazeIndex} of the player's maze
+   * @param currentIndex the index of the player's current tile
    * @param direction the direction in which to find the next tile
-   * @return {@link Tile}
+   * @return the index of the next tile
    */
-  public static Tile getNextTile(Player player, Cardinal direction) {
-    Tile currentTile = player.getCurrentTile();
-    List<List<Tile>> grid = player.getMaze().getGrid();
-    try {
-      switch (direction) {
-        case NORTH:
-          return grid.get(currentTile.getCoord().getX()).get(currentTile.getCoord().getY() + 1);
-        case EAST:
-          return grid.get(currentTile.getCoord().getX() + 1).get(currentTile.getCoord().getY());
-        case SOUTH:
-          return grid.get(currentTile.getCoord().getX()).get(currentTile.getCoord().getY() - 1);
-        case WEST:
-          return grid.get(currentTile.getCoord().getX() - 1).get(currentTile.getCoord().getY());
+  public static int getNextTile(MazeIndex maze, int currentIndex, Cardinal direction) {
+    int nextIndex = maze.getNeighbour(currentIndex, direction);
+    if (nextIndex != MazeIndex.NO_TILE) {
+      return nextIndex;
+    }
+    Log.wtf("MapUtils", "Should not have been able to call this method with direction "
+        + direction + ", because the UI should not have presented the player with the option.");
+    return currentIndex;
+  }
+
+  /**
+   * Builds a "current surroundings" description of a {@link Tile}: its own description, the
+   * direction the player is facing, and the creatures and pickups on it.
+   *
+   * @param tile the tile the player is standing on
+   * @param orientation the cardinal direction the player is facing
+   * @return the description
+   */
+  public static String describeSurroundings(Tile tile, String orientation) {
+    List<Creature> creatures = tile.getCreatures();
+    List<Pickup> pickups = tile.getPickups();
+
+    StringBuilder descriptionBuilder = new StringBuilder(tile.getDescription());
+    descriptionBuilder.append("\nYou are now facing ").append(orientation).append("\n\n");
+    if ((creatures != null && !creatures.isEmpty()) || (pickups != null && !pickups.isEmpty())) {
+      descriptionBuilder.append("Items of interest here: \n");
+      boolean ohNoesAMob = false;
+      if (creatures != null) {
+        for (Creature creature : creatures) {
+          if (creature.getMaxEffect() < 0) {
+            ohNoesAMob = true;
+          }
+          descriptionBuilder.append(creature.getName()).append('\n');
+        }
+      }
+      if (pickups != null) {
+        for (Pickup pickup : pickups) {
+          descriptionBuilder.append(pickup.getName()).append('\n');
+        }
       }
-    } catch (IndexOutOfBoundsException e) {
-      Log.wtf("MapUtils", "Should not have been able to call this method with direction "
-          + direction + ", because the UI should not have presented the player with the option.");
+      if (ohNoesAMob) {
+        descriptionBuilder
+            .append("Some of the creatures are blocking many or all of the passageways out.\n");
+      }
+    } else {
+      descriptionBuilder.append("\nYou are alone here.");
     }
-    Log.wtf("MapUtils", "Why does an available direction exist such as " + direction + " here?");
-    return currentTile;
+
+    return descriptionBuilder.toString();
   }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.world;
+
+import com.google.api.services.cloudadventure.model.Coordinates;
+import com.google.api.services.cloudadventure.model.Maze;
+import com.google.api.services.cloudadventure.model.Tile;
+import com.google.cloud.solutions.cloudadventure.world.MapUtils.Cardinal;
+
+import java.util.List;
+
+/**
+ * A compact, array-backed view of a {@link Maze}, built once per game.
+ * <p>
+ * Every {@link Tile} of the maze grid is given a dense index, {@code x * height + y}, and the
+ * directions each tile is open to are decoded once into a bitmask, one bit per {@link Cardinal}
+ * ordinal. Neighbour lookups and open-direction checks are then plain array reads, without
+ * walking the nested grid lists or unboxing {@link Coordinates} on every move.
+ */
+public class MazeIndex {
+
+  /**
+   * Returned by lookups that fall outside of the maze.
+   */
+  public static final int NO_TILE = -1;
+
+  private final int width;
+  private final int height;
+  private final Tile[] tiles;
+  private final byte[] openings;
+  private final int startIndex;
+
+  private MazeIndex(int width, int height, Tile[] tiles, byte[] openings, int startIndex) {
+    this.width = width;
+    this.height = height;
+    this.tiles = tiles;
+    this.openings = openings;
+    this.startIndex = startIndex;
+  }
+
+  /**
+   * Builds the index for the given maze. The maze grid is expected to be indexed as
+   * {@code grid.get(x).get(y)}.
+   *
+   * @param maze the {@link Maze} to index
+   * @return {@link MazeIndex}
+   */
+  public static MazeIndex from(Maze maze) {
+    List<List<Tile>> grid = maze.getGrid();
+    int width = grid.size();
+    int height = 0;
+    for (List<Tile> column : grid) {
+      height = Math.max(height, column.size());
+    }
+
+    Tile[] tiles = new Tile[width * height];
+    byte[] openings = new byte[width * height];
+    for (int x = 0; x < width; x++) {
+      List<Tile> column = grid.get(x);
+      for (int y = 0; y < column.size(); y++) {
+        Tile tile = column.get(y);
+        int index = x * height + y;
+        tiles[index] = tile;
+        openings[index] = (byte) MapUtils.getOpenings(tile);
+      }
+    }
+
+    int startIndex = NO_TILE;
+    Coordinates start = maze.getStartingCoordinates();
+    if (start != null) {
+      int startX = start.getX();
+      int startY = start.getY();
+      if (startX >= 0 && startX < width && startY >= 0 && startY < height) {
+        startIndex = startX * height + startY;
+      }
+    }
+    return new MazeIndex(width, height, tiles, openings, startIndex);
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the number of tile slots in this maze.
+   */
+  public int size() {
+    return tiles.length;
+  }
+
+  /**
+   * Returns the index of the tile at the given coordinates, or {@link #NO_TILE} if the coordinates
+   * are outside of the maze.
+   */
+  public int indexOf(int x, int y) {
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      return NO_TILE;
+    }
+    return x * height + y;
+  }
+
+  /**
+   * Returns the index of the given tile, based on its coordinates.
+   */
+  public int indexOf(Tile tile) {
+    Coordinates coord = tile.getCoord();
+    return indexOf(coord.getX(), coord.getY());
+  }
+
+  public int getX(int index) {
+    return index / height;
+  }
+
+  public int getY(int index) {
+    return index % height;
+  }
+
+  public Tile getTile(int index) {
+    return tiles[index];
+  }
+
+  /**
+   * Returns the bitmask of directions the tile at this index is open to, with one bit set per
+   * open {@link Cardinal}, at the position of its ordinal.
+   */
+  public int getOpenings(int index) {
+    return openings[index];
+  }
+
+  public boolean isOpenTo(int index, Cardinal direction) {
+    return (openings[index] & MapUtils.bit(direction)) != 0;
+  }
+
+  /**
+   * Returns the index of the neighbouring tile in the given direction, or {@link #NO_TILE} if
+   * there is no tile there.
+   */
+  public int getNeighbour(int index, Cardinal direction) {
+    int x = index / height;
+    int y = index % height;
+    switch (direction) {
+      case NORTH:
+        return y + 1 < height && tiles[index + 1] != null ? index + 1 : NO_TILE;
+      case EAST:
+        return x + 1 < width && tiles[index + height] != null ? index + height : NO_TILE;
+      case SOUTH:
+        return y > 0 && tiles[index - 1] != null ? index - 1 : NO_TILE;
+      case WEST:
+        return x > 0 && tiles[index - height] != null ? index - height : NO_TILE;
+    }
+    return NO_TILE;
+  }
+
+  /**
+   * Returns the index of the maze's starting tile, or {@link #NO_TILE} if the maze has none.
+   */
+  public int getStartIndex() {
+    return startIndex;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 Google Inc. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.google.cloud.solutions.cloudadventure.world;
+
+import com.google.api.services.cloudadventure.model.Player;
+
+import java.util.BitSet;
+
+/**
+ * Tracks which parts of a {@link Player} have changed since it was last saved: a set of flags for
+ * the player's own fields, plus the indexes, in the {@link MazeIndex}, of the tiles whose contents
+ * have changed and of the gems that have been collected.
+ * <p>
+ * A save takes the current changes with {@link #drain()} and, if it fails, puts them back with
+ * {@link #merge(PlayerChanges)}, so that changes made while the save was in flight are never lost.
+ */
+public class PlayerChanges {
+
+  /**
+   * The current tile and orientation.
+   */
+  public static final int POSITION = 1;
+  /**
+   * The current and max hit points.
+   */
+  public static final int HIT_POINTS = 1 << 1;
+  /**
+   * The pickups carried, including the number of uses left on them.
+   */
+  public static final int INVENTORY = 1 << 2;
+  /**
+   * The creatures, pickups and gems left in the maze.
+   */
+  public static final int MAZE = 1 << 3;
+  /**
+   * The gems collected, mobs killed and number of deaths.
+   */
+  public static final int STATS = 1 << 4;
+
+  public static final int ALL = POSITION | HIT_POINTS | INVENTORY | MAZE | STATS;
+
+  private int flags;
+  private BitSet changedTiles = new BitSet();
+  private BitSet removedGems = new BitSet();
+
+  /**
+   * Marks the given parts of the player as changed.
+   *
+   * @param changed a combination of the flags of this class
+   */
+  public void mark(int changed) {
+    flags |= changed;
+  }
+
+  /**
+   * Marks the creatures or pickups of the tile at the given index as changed.
+   */
+  public void markTile(int tileIndex) {
+    flags |= MAZE;
+    changedTiles.set(tileIndex);
+  }
+
+  /**
+   * Marks the gem on the tile at the given index as collected.
+   */
+  public void markGemRemoved(int tileIndex) {
+    flags |= MAZE;
+    removedGems.set(tileIndex);
+  }
+
+  public boolean isDirty() {
+    return flags != 0;
+  }
+
+  public boolean isDirty(int parts) {
+    return (flags & parts) != 0;
+  }
+
+  public int getFlags() {
+    return flags;
+  }
+
+  /**
+   * Returns the indexes of the tiles whose contents have changed.
+   */
+  public BitSet getChangedTiles() {
+    return changedTiles;
+  }
+
+  /**
+   * Returns the indexes of the tiles whose gem has been collected.
+   */
+  public BitSet getRemovedGems() {
+    return removedGems;
+  }
+
+  /**
+   * Returns the current changes and clears them from this instance.
+   */
+  public PlayerChanges drain() {
+    PlayerChanges drained = new PlayerChanges();
+    drained.flags = flags;
+    drained.changedTiles = changedTiles;
+    drained.removedGems = removedGems;
+    flags = 0;
+    changedTiles = new BitSet();
+    removedGems = new BitSet();
+    return drained;
+  }
+
+  /**
+   * Adds the given changes to the changes of this instance.
+   */
+  public void merge(PlayerChanges other) {
+    flags |= other.flags;
+    changedTiles.or(other.changedTiles);
+    removedGems.or(other.removedGems);
+  }
+}